@@ -0,0 +1,232 @@
+package org.octopusden.octopus.jira.benchmarks;
+
+import org.octopusden.octopus.jira.config.JiraProjectVersionKeys;
+import org.octopusden.octopus.jira.model.JiraProjectVersion;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache lookups of Jira versions keyed by the version entity (former {@code isMinorVersionCache} and
+ * {@code MinorVersionCacheReq} keys) against project key plus version name keys from {@link JiraProjectVersionKeys}.
+ * Every lookup starts from a fresh entity instance, as Jira hands out new objects per request. The hit ratio is
+ * reported by the {@code hits}/{@code misses} counters; see {@link CacheKeyHeapMeasurement} for the retained heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheKeyBenchmark {
+
+    @Param({"1000", "10000"})
+    public int versionCount;
+
+    /** How entity keys compare: by identity or by their field maps. */
+    @Param({"IDENTITY", "FIELDS"})
+    public String entityEquality;
+
+    private List<VersionEntity> versions;
+    private Map<Object, Boolean> entityKeyCache;
+    private Map<JiraProjectVersion, Boolean> primitiveKeyCache;
+    private JiraProjectVersionKeys keys;
+
+    @Setup
+    public void setUp() {
+        versions = entities(versionCount, "FIELDS".equals(entityEquality));
+        entityKeyCache = new ConcurrentHashMap<>();
+        primitiveKeyCache = new ConcurrentHashMap<>();
+        keys = new JiraProjectVersionKeys();
+        for (VersionEntity version : versions) {
+            entityKeyCache.put(version, Boolean.TRUE);
+            primitiveKeyCache.put(keys.of(version.project.key, version.name), Boolean.TRUE);
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class HitCounters {
+        public long hits;
+        public long misses;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            hits = 0;
+            misses = 0;
+        }
+    }
+
+    @Benchmark
+    public Boolean entityKey(HitCounters counters) {
+        VersionEntity version = nextVersion();
+        Boolean cached = entityKeyCache.get(version);
+        if (cached != null) {
+            counters.hits++;
+            return cached;
+        }
+        counters.misses++;
+        if (entityKeyCache.size() > versionCount * 4) {
+            entityKeyCache.clear();
+        }
+        entityKeyCache.put(version, Boolean.TRUE);
+        return Boolean.TRUE;
+    }
+
+    @Benchmark
+    public Boolean primitiveKey(HitCounters counters) {
+        VersionEntity version = nextVersion();
+        JiraProjectVersion key = keys.of(version.project.key, version.name);
+        Boolean cached = primitiveKeyCache.get(key);
+        if (cached != null) {
+            counters.hits++;
+            return cached;
+        }
+        counters.misses++;
+        primitiveKeyCache.put(key, Boolean.TRUE);
+        return Boolean.TRUE;
+    }
+
+    private VersionEntity nextVersion() {
+        return versions.get(ThreadLocalRandom.current().nextInt(versions.size())).copy();
+    }
+
+    static List<VersionEntity> entities(int versionCount, boolean fieldEquality) {
+        int versionsPerProject = 100;
+        int projectCount = (versionCount + versionsPerProject - 1) / versionsPerProject;
+        List<ProjectEntity> projects = new ArrayList<>(projectCount);
+        for (int i = 0; i < projectCount; i++) {
+            projects.add(new ProjectEntity((long) i, String.format("PRJ%04d", i), fieldEquality));
+        }
+        List<VersionEntity> versions = new ArrayList<>(versionCount);
+        for (int i = 0; i < versionCount; i++) {
+            // Names are unique within a project and repeat across projects, as release numbering does
+            String name = "1." + (i % versionsPerProject / 10) + "." + (i % 10);
+            versions.add(new VersionEntity((long) i, name, projects.get(i / versionsPerProject), fieldEquality));
+        }
+        return versions;
+    }
+
+    /**
+     * Stand-in of an OfBiz backed Jira entity: every instance wraps its own generic value field map.
+     */
+    abstract static class Entity {
+        final Map<String, Object> genericValue;
+        final boolean fieldEquality;
+
+        Entity(Map<String, Object> genericValue, boolean fieldEquality) {
+            this.genericValue = genericValue;
+            this.fieldEquality = fieldEquality;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!fieldEquality || other == null || other.getClass() != getClass()) {
+                return this == other;
+            }
+            return genericValue.equals(((Entity) other).genericValue);
+        }
+
+        @Override
+        public int hashCode() {
+            return fieldEquality ? genericValue.hashCode() : System.identityHashCode(this);
+        }
+    }
+
+    static final class ProjectEntity extends Entity {
+        final String key;
+        final List<Object> components;
+
+        ProjectEntity(Long id, String key, boolean fieldEquality) {
+            super(projectFields(id, key), fieldEquality);
+            this.key = key;
+            List<Object> components = new ArrayList<>(20);
+            for (int i = 0; i < 20; i++) {
+                Map<String, Object> component = new HashMap<>();
+                component.put("id", id * 100 + i);
+                component.put("name", key + "-component-" + i);
+                component.put("lead", "lead" + i);
+                components.add(component);
+            }
+            this.components = Collections.unmodifiableList(components);
+        }
+
+        private ProjectEntity(ProjectEntity source) {
+            super(new HashMap<>(source.genericValue), source.fieldEquality);
+            this.key = new String(source.key);
+            this.components = source.components;
+        }
+
+        ProjectEntity copy() {
+            return new ProjectEntity(this);
+        }
+
+        private static Map<String, Object> projectFields(Long id, String key) {
+            Map<String, Object> fields = new HashMap<>();
+            fields.put("id", id);
+            fields.put("key", key);
+            fields.put("name", "Project " + key);
+            fields.put("lead", "lead-" + key);
+            fields.put("description", "Description of project " + key);
+            fields.put("url", "https://example.org/" + key);
+            fields.put("assigneetype", 2L);
+            fields.put("avatar", 10000L + id);
+            fields.put("projecttype", "software");
+            return fields;
+        }
+    }
+
+    static final class VersionEntity extends Entity {
+        final String name;
+        final ProjectEntity project;
+
+        VersionEntity(Long id, String name, ProjectEntity project, boolean fieldEquality) {
+            super(versionFields(id, name, project), fieldEquality);
+            this.name = name;
+            this.project = project;
+        }
+
+        private VersionEntity(VersionEntity source) {
+            super(new HashMap<>(source.genericValue), source.fieldEquality);
+            this.name = new String(source.name);
+            this.project = source.project.copy();
+        }
+
+        VersionEntity copy() {
+            return new VersionEntity(this);
+        }
+
+        private static Map<String, Object> versionFields(Long id, String name, ProjectEntity project) {
+            Map<String, Object> fields = new HashMap<>();
+            fields.put("id", id);
+            fields.put("project", project.genericValue.get("id"));
+            fields.put("name", name);
+            fields.put("description", "Release " + name + " of " + project.key);
+            fields.put("sequence", id);
+            fields.put("released", "true");
+            fields.put("archived", null);
+            fields.put("releasedate", new java.sql.Timestamp(1_600_000_000_000L + id * 86_400_000L));
+            fields.put("startdate", null);
+            return fields;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.octopusden.octopus.jira.benchmarks;
+
+import org.octopusden.octopus.jira.config.JiraProjectVersionKeys;
+import org.octopusden.octopus.jira.model.JiraProjectVersion;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Heap retained by a cache of Jira versions keyed by version entities against one keyed by
+ * {@link JiraProjectVersionKeys}. Every entry is created from a fresh entity instance (as Jira hands out per request),
+ * then everything but the cache is dropped and the used heap is compared after full collections.
+ * <p>
+ * The entities are the stand-ins of {@link CacheKeyBenchmark} (a field map per entity), not Jira's version and
+ * project implementations, so the entity key figures are illustrative only: they show the order of the difference,
+ * not the footprint of a cache inside Jira. The numbers are approximate (sampled {@link Runtime} figures), run with a
+ * fixed heap, e.g.
+ * {@code java -Xms1g -Xmx1g -cp benchmarks/target/benchmarks.jar org.octopusden.octopus.jira.benchmarks.CacheKeyHeapMeasurement 100000}.
+ */
+public final class CacheKeyHeapMeasurement {
+
+    private CacheKeyHeapMeasurement() {
+    }
+
+    public static void main(String[] args) {
+        int versionCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        long entityKeys = retainedBytes(versionCount, true);
+        long primitiveKeys = retainedBytes(versionCount, false);
+        System.out.printf("versions=%d (entity keys are stand-ins, figures are illustrative)%n", versionCount);
+        System.out.printf("entity keys:    %,d bytes retained, %d bytes/entry%n", entityKeys, entityKeys / versionCount);
+        System.out.printf("primitive keys: %,d bytes retained, %d bytes/entry%n", primitiveKeys, primitiveKeys / versionCount);
+    }
+
+    private static long retainedBytes(int versionCount, boolean entityKeys) {
+        List<CacheKeyBenchmark.VersionEntity> versions = CacheKeyBenchmark.entities(versionCount, true);
+        long before = usedHeap();
+        Map<Object, Boolean> cache = new ConcurrentHashMap<>();
+        JiraProjectVersionKeys keys = new JiraProjectVersionKeys();
+        for (CacheKeyBenchmark.VersionEntity version : versions) {
+            CacheKeyBenchmark.VersionEntity requested = version.copy();
+            Object key = entityKeys ? requested : keys.of(requested.project.key, requested.name);
+            cache.put(key, Boolean.TRUE);
+        }
+        long after = usedHeap();
+        if (cache.size() != versionCount || versions.isEmpty()) {
+            throw new IllegalStateException("Unexpected cache size " + cache.size());
+        }
+        if (!entityKeys && !(cache.keySet().iterator().next() instanceof JiraProjectVersion)) {
+            throw new IllegalStateException("Unexpected key type");
+        }
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
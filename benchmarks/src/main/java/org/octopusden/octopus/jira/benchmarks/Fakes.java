@@ -0,0 +1,67 @@
+package org.octopusden.octopus.jira.benchmarks;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * In-memory fakes of Jira interfaces built on dynamic proxies. Only the stubbed methods are answered,
+ * any other call fails so a benchmark never silently measures an unexpected code path.
+ */
+final class Fakes {
+
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private Fakes() {
+    }
+
+    static <T> Builder<T> fake(Class<T> type) {
+        return new Builder<>(type);
+    }
+
+    static final class Builder<T> {
+        private final Class<T> type;
+        private final Map<String, Function<Object[], Object>> answers = new HashMap<>();
+
+        private Builder(Class<T> type) {
+            this.type = type;
+        }
+
+        Builder<T> on(String method, Function<Object[], Object> answer) {
+            answers.put(method, answer);
+            return this;
+        }
+
+        Builder<T> returning(String method, Object value) {
+            return on(method, args -> value);
+        }
+
+        T build() {
+            Map<String, Function<Object[], Object>> stubs = new HashMap<>(answers);
+            Object fake = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+                Object[] arguments = args != null ? args : NO_ARGS;
+                Function<Object[], Object> answer = stubs.get(method.getName());
+                if (answer != null) {
+                    return answer.apply(arguments);
+                }
+                return answerObjectMethod(type, proxy, method, arguments);
+            });
+            return type.cast(fake);
+        }
+    }
+
+    private static Object answerObjectMethod(Class<?> type, Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "Fake" + type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+            default:
+                throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName() + " is not faked");
+        }
+    }
+}
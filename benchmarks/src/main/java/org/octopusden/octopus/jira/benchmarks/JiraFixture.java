@@ -0,0 +1,288 @@
+package org.octopusden.octopus.jira.benchmarks;
+
+import com.atlassian.jira.bc.issue.search.SearchService;
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.issue.fields.CustomField;
+import com.atlassian.jira.issue.issuetype.IssueType;
+import com.atlassian.jira.issue.search.SearchResults;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.project.version.Version;
+import com.atlassian.jira.security.JiraAuthenticationContext;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.jira.util.MessageSet;
+import com.atlassian.jira.util.thread.JiraThreadLocalUtil;
+import com.atlassian.jira.web.bean.PagerFilter;
+import com.atlassian.query.Query;
+import com.atlassian.query.clause.Clause;
+import com.atlassian.query.clause.TerminalClause;
+import com.atlassian.query.operand.MultiValueOperand;
+import com.atlassian.query.operand.Operand;
+import com.atlassian.query.operand.SingleValueOperand;
+import com.atlassian.query.operator.Operator;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Synthetic Jira data set and a fake {@link SearchService} evaluating the queries built by the helper services.
+ * <p>
+ * The fake search charges CPU work in place of the Lucene cost: a fixed cost per search, a cost per matching document
+ * (collecting and sorting all hits) and a cost per returned issue (loading it). The costs are arbitrary spin counts,
+ * not calibrated against a Jira index, so results of benchmarks using this fixture are synthetic: they compare paged
+ * and unlimited searches, big and sharded {@code fixVersion in (...)} queries under this cost model only.
+ */
+final class JiraFixture {
+
+    static final String PROJECT_KEY = "BENCH";
+    static final String CLIENT_ISSUE_PREFIX = "CLIENT-";
+    static final int DISTINCT_CLIENT_VALUES = 100;
+
+    // Arbitrary spin counts, see the class comment
+    private static final long SEARCH_COST = 20_000;
+    private static final long MATCH_COST = 20;
+    private static final long LOAD_COST = 500;
+    private static final Comparator<Issue> BY_ID = Comparator.comparing(Issue::getId);
+
+    static {
+        installJqlQueryBuilderComponents();
+    }
+
+    final ApplicationUser user;
+    final Project project;
+    final List<Version> versions;
+    final List<Issue> issues;
+    final CustomField clientIssueField;
+    final SearchService searchService;
+    final JiraAuthenticationContext authenticationContext;
+    /** No Jira thread locals to set up outside Jira. */
+    final JiraThreadLocalUtil threadLocalUtil;
+
+    private final Map<Long, List<Issue>> issuesByVersionId = new HashMap<>();
+    private final Map<String, List<Issue>> issuesByClientValue = new HashMap<>();
+    private final ThreadLocal<ApplicationUser> loggedInUser = new ThreadLocal<>();
+
+    /**
+     * @param versionCount number of versions of the project
+     * @param issueCount number of issues, every issue has one fix version and every tenth issue has two
+     */
+    JiraFixture(int versionCount, int issueCount) {
+        this.user = Fakes.fake(ApplicationUser.class)
+                .returning("getName", "bench")
+                .returning("getKey", "bench")
+                .build();
+        this.project = project(1L, PROJECT_KEY);
+        this.clientIssueField = customField(10_001L, "Client Issue IDT", Collections.emptyList());
+
+        List<Version> projectVersions = new ArrayList<>(versionCount);
+        for (int i = 0; i < versionCount; i++) {
+            projectVersions.add(version(100_000L + i, "1." + i, project));
+            issuesByVersionId.put(100_000L + i, new ArrayList<>());
+        }
+        this.versions = Collections.unmodifiableList(projectVersions);
+
+        List<Issue> allIssues = new ArrayList<>(issueCount);
+        for (int i = 1; i <= issueCount; i++) {
+            String clientValue = CLIENT_ISSUE_PREFIX + (i % DISTINCT_CLIENT_VALUES);
+            Issue issue = issue((long) i, PROJECT_KEY + "-" + i, clientValue);
+            allIssues.add(issue);
+            issuesByVersionId.get(versions.get(i % versionCount).getId()).add(issue);
+            if (i % 10 == 0) {
+                issuesByVersionId.get(versions.get((i + 1) % versionCount).getId()).add(issue);
+            }
+            issuesByClientValue.computeIfAbsent(clientValue, value -> new ArrayList<>()).add(issue);
+        }
+        this.issues = Collections.unmodifiableList(allIssues);
+
+        this.searchService = Fakes.fake(SearchService.class)
+                .on("search", args -> search((Query) args[1], (PagerFilter) args[2]))
+                .on("validateQuery", args -> emptyMessageSet())
+                .on("getJqlString", args -> String.valueOf(((Query) args[0]).getWhereClause()))
+                .build();
+        this.authenticationContext = Fakes.fake(JiraAuthenticationContext.class)
+                .on("getLoggedInUser", args -> loggedInUser.get())
+                .on("setLoggedInUser", args -> {
+                    loggedInUser.set((ApplicationUser) args[0]);
+                    return null;
+                })
+                .build();
+        this.threadLocalUtil = Fakes.fake(JiraThreadLocalUtil.class)
+                .returning("preCall", null)
+                .returning("postCall", null)
+                .build();
+    }
+
+    static Project project(Long id, String key) {
+        return Fakes.fake(Project.class)
+                .returning("getId", id)
+                .returning("getKey", key)
+                .returning("getName", key)
+                .build();
+    }
+
+    static Version version(Long id, String name, Project project) {
+        return Fakes.fake(Version.class)
+                .returning("getId", id)
+                .returning("getName", name)
+                .returning("getProject", project)
+                .returning("getProjectId", project.getId())
+                .build();
+    }
+
+    static IssueType issueType(String id, String name) {
+        return Fakes.fake(IssueType.class)
+                .returning("getId", id)
+                .returning("getName", name)
+                .build();
+    }
+
+    static CustomField customField(Long id, String name, List<?> configurationSchemes) {
+        return Fakes.fake(CustomField.class)
+                .returning("getId", "customfield_" + id)
+                .returning("getIdAsLong", id)
+                .returning("getName", name)
+                .returning("getFieldName", name)
+                .returning("getUntranslatedName", name)
+                .returning("getConfigurationSchemes", configurationSchemes)
+                .build();
+    }
+
+    private Issue issue(Long id, String key, String clientValue) {
+        return Fakes.fake(Issue.class)
+                .returning("getId", id)
+                .returning("getKey", key)
+                .returning("getProjectId", project.getId())
+                .returning("getProjectObject", project)
+                .on("getCustomFieldValue", args -> args[0] == clientIssueField ? clientValue : null)
+                .build();
+    }
+
+    private SearchResults<Issue> search(Query query, PagerFilter pager) {
+        List<Issue> matches = evaluate(query.getWhereClause());
+        Blackhole.consumeCPU(SEARCH_COST + MATCH_COST * matches.size());
+        int start = Math.min(Math.max(pager.getStart(), 0), matches.size());
+        int max = pager.getMax() < 0 ? Integer.MAX_VALUE : pager.getMax();
+        int end = (int) Math.min((long) start + max, matches.size());
+        List<Issue> page = new ArrayList<>(matches.subList(start, end));
+        Blackhole.consumeCPU(LOAD_COST * page.size());
+        return new SearchResults<>(page, matches.size(), max, start);
+    }
+
+    private List<Issue> evaluate(Clause clause) {
+        if (clause == null) {
+            return issues;
+        }
+        if (clause instanceof TerminalClause) {
+            return evaluateTerminal((TerminalClause) clause);
+        }
+        List<Issue> result = null;
+        for (Clause child : clause.getClauses()) {
+            List<Issue> childResult = evaluate(child);
+            if (childResult != issues) {
+                result = result == null ? childResult : intersect(result, childResult);
+            }
+        }
+        return result == null ? issues : result;
+    }
+
+    private List<Issue> evaluateTerminal(TerminalClause clause) {
+        String name = clause.getName();
+        if ("fixVersion".equalsIgnoreCase(name)) {
+            Set<Issue> found = new LinkedHashSet<>();
+            for (SingleValueOperand operand : singleValues(clause.getOperand())) {
+                found.addAll(issuesByVersionId.getOrDefault(operand.getLongValue(), Collections.emptyList()));
+            }
+            List<Issue> sorted = new ArrayList<>(found);
+            sorted.sort(BY_ID);
+            return sorted;
+        }
+        if (name.startsWith("cf[")) {
+            String value = singleValues(clause.getOperand()).get(0).getStringValue();
+            if (clause.getOperator() == Operator.EQUALS) {
+                return issuesByClientValue.getOrDefault(value, Collections.emptyList());
+            }
+            // like search matches the common token of all values
+            return value.startsWith(CLIENT_ISSUE_PREFIX) ? issues : Collections.emptyList();
+        }
+        return issues;
+    }
+
+    private static List<SingleValueOperand> singleValues(Operand operand) {
+        List<SingleValueOperand> values = new ArrayList<>();
+        if (operand instanceof SingleValueOperand) {
+            values.add((SingleValueOperand) operand);
+        } else if (operand instanceof MultiValueOperand) {
+            for (Operand value : ((MultiValueOperand) operand).getValues()) {
+                values.addAll(singleValues(value));
+            }
+        }
+        return values;
+    }
+
+    private static List<Issue> intersect(List<Issue> left, List<Issue> right) {
+        Set<Issue> rightSet = new LinkedHashSet<>(right);
+        List<Issue> result = new ArrayList<>();
+        for (Issue issue : left) {
+            if (rightSet.contains(issue)) {
+                result.add(issue);
+            }
+        }
+        return result;
+    }
+
+    private static MessageSet emptyMessageSet() {
+        return Fakes.fake(MessageSet.class)
+                .returning("hasAnyErrors", false)
+                .returning("hasAnyWarnings", false)
+                .returning("hasAnyMessages", false)
+                .returning("getErrorMessages", Collections.emptySet())
+                .returning("getWarningMessages", Collections.emptySet())
+                .build();
+    }
+
+    /**
+     * JqlQueryBuilder asks {@link ComponentAccessor} for its clause builder factory. Outside Jira the factory
+     * is served by a fake creating the default clause builder of the API with fake collaborators.
+     */
+    @SuppressWarnings("unchecked")
+    private static void installJqlQueryBuilderComponents() {
+        Map<Class<?>, Object> components = new HashMap<>();
+        try {
+            Class<Object> factoryType = (Class<Object>) Class.forName("com.atlassian.jira.jql.builder.JqlClauseBuilderFactory");
+            Class<?> builderType = Class.forName("com.atlassian.jira.jql.builder.DefaultJqlClauseBuilder");
+            components.put(factoryType, Fakes.fake(factoryType)
+                    .on("newJqlClauseBuilder", args -> newClauseBuilder(builderType, args[0]))
+                    .build());
+        } catch (ClassNotFoundException e) {
+            // query builder of this Jira version does not use the component accessor
+        }
+        ComponentAccessor.initialiseWorker(Fakes.fake(ComponentAccessor.Worker.class)
+                .on("getComponent", args -> components.get((Class<?>) args[0]))
+                .on("getComponentOfType", args -> components.get((Class<?>) args[0]))
+                .on("getOSGiComponentInstanceOfType", args -> components.get((Class<?>) args[0]))
+                .build());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object newClauseBuilder(Class<?> builderType, Object parent) {
+        for (Constructor<?> constructor : builderType.getConstructors()) {
+            Class<?>[] parameterTypes = constructor.getParameterTypes();
+            if (parameterTypes.length == 2 && parameterTypes[0].isInstance(parent) && parameterTypes[1].isInterface()) {
+                try {
+                    return constructor.newInstance(parent, Fakes.fake((Class<Object>) parameterTypes[1]).build());
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("Unable to create " + builderType.getName(), e);
+                }
+            }
+        }
+        throw new IllegalStateException("No suitable constructor of " + builderType.getName());
+    }
+}
@@ -0,0 +1,159 @@
+package org.octopusden.octopus.jira.benchmarks;
+
+import com.atlassian.jira.bc.issue.search.SearchService;
+import com.atlassian.jira.issue.CustomFieldManager;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.issue.IssueManager;
+import com.atlassian.jira.issue.fields.CustomField;
+import com.atlassian.jira.issue.fields.config.FieldConfig;
+import com.atlassian.jira.issue.fields.config.FieldConfigScheme;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.project.version.Version;
+import org.apache.commons.collections.MultiHashMap;
+import org.apache.commons.collections.MultiMap;
+import org.octopusden.octopus.jira.utils.JiraGetService;
+import org.octopusden.octopus.jira.utils.JiraSearchService;
+import org.octopusden.octopus.jira.utils.impl.JiraHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory paths of {@link JiraHelper}: field config lookup (against the former nested scheme scan),
+ * version id conversion, issue key extraction and release build parsing.
+ * Jira data and searches come from {@link JiraFixture}, results are synthetic.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JiraHelperBenchmark {
+
+    @Param({"50", "500"})
+    public int schemeCount;
+
+    @Param({"1000"})
+    public int projectCount;
+
+    @Param({"200"})
+    public int versionCount;
+
+    @Param({"5000"})
+    public int issueCount;
+
+    private JiraHelper jiraHelper;
+    private CustomField customField;
+    private String lastProjectKey;
+    private List<Version> versions;
+    private List<Issue> issues;
+
+    @Setup
+    public void setUp() {
+        JiraFixture fixture = new JiraFixture(versionCount, issueCount);
+        versions = fixture.versions;
+        issues = fixture.issues;
+
+        List<Project> projects = new ArrayList<>(projectCount);
+        for (int i = 0; i < projectCount; i++) {
+            projects.add(JiraFixture.project((long) i, String.format("P%04d", i)));
+        }
+        lastProjectKey = projects.get(projectCount - 1).getKey();
+        List<FieldConfigScheme> schemes = new ArrayList<>(schemeCount);
+        int projectsPerScheme = Math.max(1, projectCount / schemeCount);
+        for (int i = 0; i < schemeCount; i++) {
+            int from = Math.min(i * projectsPerScheme, projectCount);
+            int to = i == schemeCount - 1 ? projectCount : Math.min(from + projectsPerScheme, projectCount);
+            schemes.add(scheme(projects.subList(from, to)));
+        }
+        customField = JiraFixture.customField(10_002L, "Components", schemes);
+
+        jiraHelper = new JiraHelper(Fakes.fake(JiraGetService.class).build(), Fakes.fake(JiraSearchService.class).build(),
+                Fakes.fake(IssueManager.class).build(), Fakes.fake(CustomFieldManager.class).build(),
+                Fakes.fake(SearchService.class).build());
+    }
+
+    @Benchmark
+    public FieldConfig getFieldConfigSafe() {
+        return jiraHelper.getFieldConfigSafe(customField, lastProjectKey);
+    }
+
+    @Benchmark
+    public FieldConfig getFieldConfigSafeNestedScan() {
+        return nestedSchemeScan(customField, lastProjectKey);
+    }
+
+    @Benchmark
+    public Long[] getVersionIds() {
+        return jiraHelper.getVersionIds(versions);
+    }
+
+    @Benchmark
+    public String[] getVersionStringIds() {
+        return jiraHelper.getVersionStringIds(versions);
+    }
+
+    @Benchmark
+    public List<String> toKeyList() {
+        return jiraHelper.toKeyList(issues);
+    }
+
+    @Benchmark
+    public boolean crdBuild() {
+        return jiraHelper.crdBuild("03.45.11.27-1043");
+    }
+
+    @Benchmark
+    public String getReleaseVersionNameByBuild() {
+        return jiraHelper.getReleaseVersionNameByBuild("03.45.11.27#1043");
+    }
+
+    @Benchmark
+    public String getReleaseVersionNameByBuildNotMatching() {
+        return jiraHelper.getReleaseVersionNameByBuild("component-1.0.27");
+    }
+
+    private static FieldConfigScheme scheme(List<Project> projects) {
+        FieldConfig fieldConfig = Fakes.fake(FieldConfig.class).build();
+        MultiMap configs = new MultiHashMap();
+        configs.put(fieldConfig, null);
+        return Fakes.fake(FieldConfigScheme.class)
+                .returning("getConfigsByConfig", configs)
+                .returning("getAssociatedProjectObjects", new ArrayList<>(projects))
+                .build();
+    }
+
+    /**
+     * getFieldConfigSafe before the field config index.
+     */
+    private static FieldConfig nestedSchemeScan(CustomField customField, String projectKey) {
+        List<FieldConfigScheme> schemes = customField.getConfigurationSchemes();
+        if (schemes != null && !schemes.isEmpty()) {
+            for (FieldConfigScheme scheme : schemes) {
+                List<Project> associatedProjects = scheme.getAssociatedProjectObjects();
+                for (Project project : associatedProjects) {
+                    if (project.getKey().equals(projectKey)) {
+                        MultiMap configs = scheme.getConfigsByConfig();
+                        if (configs != null && !configs.isEmpty()) {
+                            return (FieldConfig) configs.keySet().iterator().next();
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
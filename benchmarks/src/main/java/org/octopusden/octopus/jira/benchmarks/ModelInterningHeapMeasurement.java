@@ -0,0 +1,143 @@
+package org.octopusden.octopus.jira.benchmarks;
+
+import org.octopusden.octopus.jira.config.RegistryModelInterner;
+import org.octopusden.octopus.jira.model.Distribution;
+import org.octopusden.octopus.jira.model.JiraComponentVersionRange;
+import org.octopusden.octopus.jira.model.RepositoryType;
+import org.octopusden.octopus.jira.model.VCSSettings;
+import org.octopusden.octopus.jira.model.VersionControlSystemRoot;
+import org.octopusden.octopus.releng.dto.ComponentInfo;
+import org.octopusden.octopus.releng.dto.JiraComponent;
+import org.octopusden.releng.versions.ComponentVersionFormat;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Heap retained by the registry model values held in the caches of
+ * {@link org.octopusden.octopus.jira.config.ComponentRegistryServiceImpl} with and without
+ * {@link RegistryModelInterner}. Every registry answer is converted to fresh instances, with fresh strings as a JSON
+ * decoder produces them: all version ranges, the ranges of every project, and the distribution, VCS settings and Jira
+ * component of a number of versions per component.
+ * <p>
+ * The values are built here the way the service converts registry answers, the service itself and its caches are not
+ * involved: the output shows what the interner saves on these values, not the heap of a running service. The numbers
+ * are approximate (sampled {@link Runtime} figures), run with a fixed heap, e.g.
+ * {@code java -Xms1g -Xmx1g -cp benchmarks/target/benchmarks.jar org.octopusden.octopus.jira.benchmarks.ModelInterningHeapMeasurement 2000 20}.
+ */
+public final class ModelInterningHeapMeasurement {
+
+    private static final int RANGES_PER_COMPONENT = 5;
+
+    private ModelInterningHeapMeasurement() {
+    }
+
+    public static void main(String[] args) {
+        int componentCount = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        int versionsPerComponent = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        long plain = retainedBytes(componentCount, versionsPerComponent, null);
+        long interned = retainedBytes(componentCount, versionsPerComponent, new RegistryModelInterner());
+        System.out.printf("components=%d, ranges=%d, cached versions=%d%n",
+                componentCount, componentCount * RANGES_PER_COMPONENT, componentCount * versionsPerComponent);
+        System.out.printf("without interning: %,d bytes retained%n", plain);
+        System.out.printf("with interning:    %,d bytes retained (%d%% less)%n", interned, 100 - interned * 100 / plain);
+    }
+
+    private static long retainedBytes(int componentCount, int versionsPerComponent, RegistryModelInterner interner) {
+        long before = usedHeap();
+        Set<JiraComponentVersionRange> allRanges = new HashSet<>();
+        Map<String, Set<JiraComponentVersionRange>> rangesByProject = new HashMap<>();
+        for (int c = 0; c < componentCount; c++) {
+            for (int r = 0; r < RANGES_PER_COMPONENT; r++) {
+                allRanges.add(range(c, r, interner));
+                rangesByProject.computeIfAbsent(projectKey(c), key -> new HashSet<>()).add(range(c, r, interner));
+            }
+        }
+        Map<String, Object> byProjectVersion = new HashMap<>();
+        for (int c = 0; c < componentCount; c++) {
+            for (int v = 0; v < versionsPerComponent; v++) {
+                String key = projectKey(c) + ":" + v;
+                byProjectVersion.put("distribution " + key, distribution(c, interner));
+                byProjectVersion.put("vcs " + key, vcsSettings(c, interner));
+                byProjectVersion.put("jira " + key, jiraComponent(c, interner));
+            }
+        }
+        long after = usedHeap();
+        // The caches and the interner must stay reachable until the heap is sampled
+        if (allRanges.size() + rangesByProject.size() + byProjectVersion.size() == 0 || interner != null && interner.getSize() == 0) {
+            throw new IllegalStateException("Nothing cached");
+        }
+        return after - before;
+    }
+
+    private static JiraComponentVersionRange range(int component, int range, RegistryModelInterner interner) {
+        JiraComponentVersionRange value = new JiraComponentVersionRange(
+                fresh(componentName(component)),
+                fresh("[" + range + ".0," + (range + 1) + ".0)"),
+                jiraComponent(component, interner),
+                distribution(component, interner),
+                vcsSettings(component, interner));
+        return interner == null ? value : interner.range(value);
+    }
+
+    private static Distribution distribution(int component, RegistryModelInterner interner) {
+        Distribution value = new Distribution(true, component % 10 == 0, fresh("org.example." + projectKey(component) + ":" + componentName(component)));
+        return interner == null ? value : interner.distribution(value);
+    }
+
+    private static VCSSettings vcsSettings(int component, RegistryModelInterner interner) {
+        VersionControlSystemRoot root = new VersionControlSystemRoot(
+                fresh("main"),
+                RepositoryType.GIT,
+                fresh("ssh://git@example.org/" + projectKey(component).toLowerCase() + "/" + componentName(component) + ".git"),
+                fresh(componentName(component) + "-$version"),
+                fresh("master"),
+                fresh("hotfix/$major.$minor.$service"));
+        VCSSettings value = new VCSSettings(null, Collections.singletonList(interner == null ? root : interner.vcsRoot(root)));
+        return interner == null ? value : interner.vcsSettings(value);
+    }
+
+    private static JiraComponent jiraComponent(int component, RegistryModelInterner interner) {
+        JiraComponent value = new JiraComponent(
+                fresh(projectKey(component)),
+                fresh(componentName(component)),
+                ComponentVersionFormat.create(fresh("$major.$minor"), fresh("$major.$minor.$service"),
+                        fresh("$major.$minor.$service-$fix"), fresh("$major"), fresh("$major.$minor.$service-$fix.$build")),
+                new ComponentInfo(fresh(""), fresh("$baseVersionFormat")),
+                false,
+                true);
+        return interner == null ? value : interner.jiraComponent(value);
+    }
+
+    private static String projectKey(int component) {
+        return String.format("PRJ%04d", component / 4);
+    }
+
+    private static String componentName(int component) {
+        return "component-" + component;
+    }
+
+    /** A new string instance, as decoded from a registry answer. */
+    private static String fresh(String value) {
+        return new String(value.toCharArray());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
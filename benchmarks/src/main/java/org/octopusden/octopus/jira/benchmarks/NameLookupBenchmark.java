@@ -0,0 +1,112 @@
+package org.octopusden.octopus.jira.benchmarks;
+
+import com.atlassian.jira.bc.project.version.VersionService;
+import com.atlassian.jira.config.IssueTypeManager;
+import com.atlassian.jira.issue.issuetype.IssueType;
+import com.atlassian.jira.issue.link.IssueLinkType;
+import com.atlassian.jira.issue.link.IssueLinkTypeManager;
+import com.atlassian.jira.project.ProjectManager;
+import com.atlassian.jira.security.JiraAuthenticationContext;
+import com.atlassian.jira.user.util.UserManager;
+import org.octopusden.octopus.jira.utils.impl.JiraGetServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Issue type and issue link type lookup by name in {@link JiraGetServiceImpl} against the former scan of the managers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NameLookupBenchmark {
+
+    @Param({"30", "300"})
+    public int typeCount;
+
+    private JiraGetServiceImpl jiraGetService;
+    private IssueTypeManager issueTypeManager;
+    private String issueTypeName;
+    private String issueTypeNameOtherCase;
+    private String linkTypeName;
+
+    @Setup
+    public void setUp() {
+        Map<String, IssueType> issueTypes = new LinkedHashMap<>();
+        Map<Long, IssueLinkType> linkTypes = new LinkedHashMap<>();
+        for (int i = 0; i < typeCount; i++) {
+            issueTypes.put(String.valueOf(i), JiraFixture.issueType(String.valueOf(i), "Issue Type " + i));
+            linkTypes.put((long) i, Fakes.fake(IssueLinkType.class)
+                    .returning("getId", (long) i)
+                    .returning("getName", "Link Type " + i)
+                    .build());
+        }
+        issueTypeName = "Issue Type " + (typeCount - 1);
+        issueTypeNameOtherCase = issueTypeName.toUpperCase(Locale.ROOT);
+        linkTypeName = "Link Type " + (typeCount - 1);
+
+        // Hits of the name index are checked against the managers by id
+        issueTypeManager = Fakes.fake(IssueTypeManager.class)
+                .returning("getIssueTypes", new ArrayList<>(issueTypes.values()))
+                .on("getIssueType", args -> issueTypes.get((String) args[0]))
+                .build();
+        IssueLinkTypeManager issueLinkTypeManager = Fakes.fake(IssueLinkTypeManager.class)
+                .returning("getIssueLinkTypes", new ArrayList<>(linkTypes.values()))
+                .on("getIssueLinkType", args -> linkTypes.get((Long) args[0]))
+                .build();
+        jiraGetService = new JiraGetServiceImpl(issueTypeManager, issueLinkTypeManager, Fakes.fake(JiraAuthenticationContext.class).build(),
+                Fakes.fake(UserManager.class).build(), Fakes.fake(VersionService.class).build(), Fakes.fake(ProjectManager.class).build());
+    }
+
+    @Benchmark
+    public Optional<IssueType> getIssueTypeByName() {
+        return jiraGetService.getIssueTypeByName(issueTypeName);
+    }
+
+    @Benchmark
+    public Optional<IssueType> getIssueTypeByNameOtherCase() {
+        return jiraGetService.getIssueTypeByName(issueTypeNameOtherCase);
+    }
+
+    @Benchmark
+    public Optional<IssueType> getIssueTypeByNameScan() {
+        return scan(issueTypeManager.getIssueTypes(), issueTypeName);
+    }
+
+    @Benchmark
+    public Optional<IssueLinkType> getIssueLinkTypeByName() {
+        return jiraGetService.getIssueLinkTypeByName(linkTypeName);
+    }
+
+    /**
+     * getIssueTypeByName before the name index.
+     */
+    private static Optional<IssueType> scan(Collection<IssueType> issueTypes, String name) {
+        IssueType resIssueType = null;
+        for (IssueType issueType : issueTypes) {
+            if (issueType.getName().equalsIgnoreCase(name)) {
+                resIssueType = issueType;
+            }
+        }
+        return Optional.ofNullable(resIssueType);
+    }
+}
@@ -0,0 +1,117 @@
+package org.octopusden.octopus.jira.benchmarks;
+
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.issue.search.SearchException;
+import com.atlassian.jira.jql.builder.JqlQueryBuilder;
+import com.atlassian.jira.web.bean.PagerFilter;
+import com.atlassian.query.Query;
+import org.octopusden.octopus.jira.utils.impl.JiraSearchServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Search paths of {@link JiraSearchServiceImpl} over the fake search of {@link JiraFixture}: paged against unlimited
+ * retrieval, exact custom field search against the former like-and-filter search and fan-out of a
+ * {@code fixVersion in (...)} search over many versions against a single query.
+ * The search cost is synthetic, see {@link JiraFixture}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({"20000"})
+    public int issueCount;
+
+    @Param({"400"})
+    public int versionCount;
+
+    @Param({"500"})
+    public int pageSize;
+
+    @Param({"50"})
+    public int shardSize;
+
+    @Param({"4"})
+    public int threads;
+
+    private JiraFixture fixture;
+    private JiraSearchServiceImpl jiraSearchService;
+    private ExecutorService executor;
+    private Query allIssuesQuery;
+    private String clientIssueValue;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = new JiraFixture(versionCount, issueCount);
+        jiraSearchService = new JiraSearchServiceImpl(fixture.authenticationContext, fixture.searchService, null, fixture.threadLocalUtil, pageSize);
+        executor = Executors.newFixedThreadPool(threads);
+        allIssuesQuery = JqlQueryBuilder.newBuilder().where().project(fixture.project.getId()).buildQuery();
+        clientIssueValue = JiraFixture.CLIENT_ISSUE_PREFIX + (JiraFixture.DISTINCT_CLIENT_VALUES - 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public List<Issue> getIssuesFromQueryPaged() {
+        return jiraSearchService.getIssuesFromQuery(fixture.user, allIssuesQuery);
+    }
+
+    @Benchmark
+    public List<Issue> getIssuesFromQueryUnlimited() throws SearchException {
+        return fixture.searchService.search(fixture.user, allIssuesQuery, PagerFilter.getUnlimitedFilter()).getResults();
+    }
+
+    @Benchmark
+    public Optional<Issue> streamIssuesFromQueryFindFirst() {
+        return jiraSearchService.streamIssuesFromQuery(fixture.user, allIssuesQuery).findFirst();
+    }
+
+    @Benchmark
+    public Collection<Issue> findIssuesByCustomFieldValueExact() {
+        return jiraSearchService.findIssuesByCustomFieldValue(fixture.user, fixture.clientIssueField, clientIssueValue, true);
+    }
+
+    @Benchmark
+    public Collection<Issue> findIssuesByCustomFieldValueExactLikeAndFilter() throws SearchException {
+        Query query = JqlQueryBuilder.newBuilder().where().customField(fixture.clientIssueField.getIdAsLong()).like(clientIssueValue).buildQuery();
+        return fixture.searchService.search(fixture.user, query, PagerFilter.getUnlimitedFilter()).getResults().stream()
+                .filter(issue -> clientIssueValue.equals(issue.getCustomFieldValue(fixture.clientIssueField)))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Issue> findIssuesManyVersions() {
+        return jiraSearchService.findIssues(fixture.user, fixture.project, fixture.versions);
+    }
+
+    @Benchmark
+    public List<Issue> findIssuesManyVersionsFanOut() {
+        return jiraSearchService.findIssues(fixture.user, fixture.project, fixture.versions, shardSize, executor);
+    }
+}
@@ -0,0 +1,48 @@
+package org.octopusden.octopus.jira.config
+
+import java.util.Optional
+import java.util.concurrent.CompletableFuture
+import org.octopusden.octopus.jira.model.Component
+import org.octopusden.octopus.jira.model.DetailedComponent
+import org.octopusden.octopus.jira.model.DetailedComponentVersion
+import org.octopusden.octopus.jira.model.DetailedComponentVersions
+import org.octopusden.octopus.jira.model.Distribution
+import org.octopusden.octopus.jira.model.JiraComponentVersionRange
+import org.octopusden.octopus.jira.model.JiraProjectVersion
+import org.octopusden.octopus.jira.model.VCSSettings
+import org.octopusden.octopus.releng.dto.ComponentVersion
+import org.octopusden.octopus.releng.dto.JiraComponentVersion
+
+/**
+ * Non-blocking counterpart of [ComponentRegistryService] backed by the same caches. Answers available in memory
+ * are returned as completed futures; the others are loaded on a bounded executor, so independent lookups run
+ * concurrently and can be composed without holding the calling thread.
+ */
+interface AsyncComponentRegistryService {
+
+    fun getAllComponentsAsync(): CompletableFuture<List<Component>>
+
+    fun getComponentAsync(component: String): CompletableFuture<Optional<Component>>
+
+    fun getJiraComponentByProjectAndVersionAsync(jiraProjectVersion: JiraProjectVersion): CompletableFuture<Optional<JiraComponentVersion>>
+
+    fun getJiraComponentByComponentNameAndVersionAsync(componentVersion: ComponentVersion): CompletableFuture<Optional<JiraComponentVersion>>
+
+    fun componentExistsAsync(projectVersion: JiraProjectVersion): CompletableFuture<Boolean>
+
+    fun getDistributionAsync(jiraProjectVersion: JiraProjectVersion): CompletableFuture<Optional<Distribution>>
+
+    fun getDistributionAsync(componentVersion: ComponentVersion): CompletableFuture<Optional<Distribution>>
+
+    fun getVCSSettingsAsync(jiraProjectVersion: JiraProjectVersion): CompletableFuture<Optional<VCSSettings>>
+
+    fun getVCSSettingsAsync(componentVersion: ComponentVersion): CompletableFuture<Optional<VCSSettings>>
+
+    fun getAllJiraComponentVersionRangesAsync(): CompletableFuture<Set<JiraComponentVersionRange>>
+
+    fun getDetailedComponentVersionAsync(componentVersion: ComponentVersion): CompletableFuture<DetailedComponentVersion>
+
+    fun getDetailedComponentVersionsAsync(component: String, versions: Set<String>): CompletableFuture<DetailedComponentVersions>
+
+    fun getDetailedComponentAsync(component: String, version: String): CompletableFuture<DetailedComponent>
+}
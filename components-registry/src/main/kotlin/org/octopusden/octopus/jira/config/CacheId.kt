@@ -7,6 +7,7 @@ enum class CacheId {
     JIRA_COMPONENT_VERSION_RANGES_BY_PROJECT_KEY,
 
     IS_VERSION_MINOR,
+    @Deprecated("Minor versions are read from MINOR_VERSION_BY_VERSION_NAME_AND_PROJECT")
     MINOR_VERSION_BY_VERSION,
     MINOR_VERSION_BY_VERSION_NAME_AND_PROJECT,
 
@@ -21,10 +22,13 @@ enum class CacheId {
     VCS_SETTINGS_BY_JIRA_PROJECT_VERSION,
     VCS_SETTINGS_BY_COMPONENT_VERSION,
 
+    @Deprecated("Existence is derived from JIRA_COMPONENT_BY_PROJECT_VERSION")
     IS_COMPONENT_EXISTS_BY_PROJECT_VERSION,
+    @Deprecated("Existence is derived from JIRA_COMPONENTS_BY_PROJECT_KEY")
     IS_COMPONENT_EXISTS_BY_PROJECT_KEY,
 
     DETAILED_COMPONENT_VERSION,
+    @Deprecated("Detailed versions are cached per version in DETAILED_COMPONENT_VERSION")
     DETAILED_COMPONENT_VERSIONS,
 
     DETAILED_COMPONENT;
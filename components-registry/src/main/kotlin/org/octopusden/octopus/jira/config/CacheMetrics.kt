@@ -0,0 +1,289 @@
+package org.octopusden.octopus.jira.config
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Counters of one cache, recorded by [LoaderTracker] (loads) and by the cache returned from
+ * [com.atlassian.cache.CacheManager.trackedCache] (requests). Updates are striped ([LongAdder]) so recording
+ * stays cheap under contention; a [snapshot] is a consistent-enough copy for monitoring, not a transaction.
+ */
+class CacheMetrics internal constructor(val cacheName: String) {
+
+    private val requests = LongAdder()
+    private val misses = LongAdder()
+    private val loads = LongAdder()
+    private val loadFailures = LongAdder()
+    private val coalesced = LongAdder()
+    private val staleReloads = LongAdder()
+    private val staleServed = LongAdder()
+    private val totalLoadNanos = LongAdder()
+    private val maxLoadNanos = AtomicLong()
+    private val loadLatencyBuckets = Array(LOAD_LATENCY_BUCKETS) { LongAdder() }
+    private val inFlight = AtomicInteger()
+
+    @Volatile
+    private var clearStartedAtNanos = 0L
+
+    @Volatile
+    private var lastClearDurationNanos = -1L
+
+    @Volatile
+    private var lastClearAtMillisValue = 0L
+
+    @Volatile
+    internal var entryCounter: () -> Int = { -1 }
+
+    @Volatile
+    internal var staleCounter: () -> Int = { 0 }
+
+    internal fun recordRequest() = requests.increment()
+
+    internal fun recordMiss() = misses.increment()
+
+    internal fun recordCoalesced() = coalesced.increment()
+
+    internal fun recordStaleReload() = staleReloads.increment()
+
+    internal fun recordStaleServed() = staleServed.increment()
+
+    internal fun loadStarted() {
+        inFlight.incrementAndGet()
+    }
+
+    internal fun loadFinished() {
+        inFlight.decrementAndGet()
+    }
+
+    internal fun recordLoad(durationNanos: Long, success: Boolean) {
+        loads.increment()
+        if (!success) {
+            loadFailures.increment()
+        }
+        totalLoadNanos.add(durationNanos)
+        var max = maxLoadNanos.get()
+        while (durationNanos > max && !maxLoadNanos.compareAndSet(max, durationNanos)) {
+            max = maxLoadNanos.get()
+        }
+        loadLatencyBuckets[bucketOf(durationNanos)].increment()
+    }
+
+    internal fun clearStarted() {
+        clearStartedAtNanos = System.nanoTime()
+    }
+
+    internal fun clearFinished() {
+        lastClearDurationNanos = System.nanoTime() - clearStartedAtNanos
+        lastClearAtMillisValue = System.currentTimeMillis()
+    }
+
+    val requestCount: Long
+        get() = requests.sum()
+
+    val missCount: Long
+        get() = misses.sum()
+
+    /** Requests minus misses, the two counters are read one after the other. */
+    val hitCount: Long
+        get() = hitsOf(requests.sum(), misses.sum())
+
+    val hitRatio: Double
+        get() {
+            val requestCount = requests.sum()
+            return if (requestCount == 0L) 0.0 else hitsOf(requestCount, misses.sum()).toDouble() / requestCount
+        }
+
+    val loadCount: Long
+        get() = loads.sum()
+
+    val loadFailureCount: Long
+        get() = loadFailures.sum()
+
+    val coalescedCount: Long
+        get() = coalesced.sum()
+
+    val staleReloadCount: Long
+        get() = staleReloads.sum()
+
+    val staleServedCount: Long
+        get() = staleServed.sum()
+
+    val staleEntryCount: Int
+        get() = staleCounter()
+
+    val inFlightCount: Int
+        get() = inFlight.get()
+
+    /** Entry count of the cache, -1 if not available. Reads the key set of the cache, not a counter. */
+    val entryCount: Int
+        get() = entryCounter()
+
+    val meanLoadMillis: Double
+        get() = meanLoadMillisOf(loads.sum())
+
+    val maxLoadMillis: Long
+        get() = TimeUnit.NANOSECONDS.toMillis(maxLoadNanos.get())
+
+    val loadLatencyHistogram: LongArray
+        get() = LongArray(LOAD_LATENCY_BUCKETS) { loadLatencyBuckets[it].sum() }
+
+    val lastClearDurationMillis: Long
+        get() = lastClearDurationNanos.let { if (it < 0) -1L else TimeUnit.NANOSECONDS.toMillis(it) }
+
+    val lastClearAtMillis: Long
+        get() = lastClearAtMillisValue
+
+    fun snapshot(): CacheMetricsSnapshot {
+        val requestCount = requests.sum()
+        val missCount = misses.sum()
+        val loadCount = loads.sum()
+        return CacheMetricsSnapshot(
+            cacheName = cacheName,
+            requests = requestCount,
+            hits = hitsOf(requestCount, missCount),
+            misses = missCount,
+            loads = loadCount,
+            loadFailures = loadFailureCount,
+            coalescedLoads = coalescedCount,
+            staleReloads = staleReloadCount,
+            staleServed = staleServedCount,
+            staleEntries = staleEntryCount,
+            inFlightLoads = inFlightCount,
+            entries = entryCount,
+            meanLoadMillis = meanLoadMillisOf(loadCount),
+            maxLoadMillis = maxLoadMillis,
+            loadLatencyHistogram = loadLatencyHistogram,
+            lastClearDurationMillis = lastClearDurationMillis,
+            lastClearAtMillis = lastClearAtMillis
+        )
+    }
+
+    private fun hitsOf(requestCount: Long, missCount: Long): Long = maxOf(0L, requestCount - missCount)
+
+    private fun meanLoadMillisOf(loadCount: Long): Double =
+        if (loadCount == 0L) 0.0 else totalLoadNanos.sum().toDouble() / loadCount / NANOS_IN_MILLI
+
+    companion object {
+        /**
+         * Bucket 0 counts loads under 1 ms, bucket `i` loads in `[2^(i-1), 2^i)` ms, the last bucket everything above.
+         */
+        const val LOAD_LATENCY_BUCKETS = 16
+
+        private const val NANOS_IN_MILLI = 1_000_000.0
+
+        /** Upper bounds in ms of the load latency buckets, the last one is open. */
+        val LOAD_LATENCY_BUCKET_BOUNDS_MILLIS: LongArray = LongArray(LOAD_LATENCY_BUCKETS - 1) { 1L shl it }
+
+        private fun bucketOf(durationNanos: Long): Int {
+            val millis = durationNanos / 1_000_000
+            if (millis <= 0) {
+                return 0
+            }
+            return minOf(LOAD_LATENCY_BUCKETS - 1, 64 - java.lang.Long.numberOfLeadingZeros(millis))
+        }
+    }
+}
+
+/**
+ * Point-in-time copy of [CacheMetrics].
+ *
+ * @param hits requests served without calling the loader
+ * @param misses requests which called the loader, including the ones coalesced into another caller's load
+ * @param loads loader executions, including re-executions of the generation fence
+ * @param staleServed failed loads answered with the last known good value, see [StaleWhileRevalidate]
+ * @param staleEntries keys currently served with a last known good value because their latest load failed
+ * @param entries entry count of the cache, -1 if not available
+ * @param loadLatencyHistogram load counts per bucket, see [CacheMetrics.LOAD_LATENCY_BUCKET_BOUNDS_MILLIS]
+ * @param lastClearDurationMillis duration of the last `removeAll()`, -1 if never cleared
+ * @param lastClearAtMillis epoch millis of the last `removeAll()`, 0 if never cleared
+ */
+data class CacheMetricsSnapshot(
+    val cacheName: String,
+    val requests: Long,
+    val hits: Long,
+    val misses: Long,
+    val loads: Long,
+    val loadFailures: Long,
+    val coalescedLoads: Long,
+    val staleReloads: Long,
+    val staleServed: Long,
+    val staleEntries: Int,
+    val inFlightLoads: Int,
+    val entries: Int,
+    val meanLoadMillis: Double,
+    val maxLoadMillis: Long,
+    val loadLatencyHistogram: LongArray,
+    val lastClearDurationMillis: Long,
+    val lastClearAtMillis: Long
+) {
+    val hitRatio: Double
+        get() = if (requests == 0L) 0.0 else hits.toDouble() / requests
+
+    override fun equals(other: Any?): Boolean {
+        if (this === other) {
+            return true
+        }
+        return other is CacheMetricsSnapshot &&
+            cacheName == other.cacheName &&
+            requests == other.requests &&
+            hits == other.hits &&
+            misses == other.misses &&
+            loads == other.loads &&
+            loadFailures == other.loadFailures &&
+            coalescedLoads == other.coalescedLoads &&
+            staleReloads == other.staleReloads &&
+            staleServed == other.staleServed &&
+            staleEntries == other.staleEntries &&
+            inFlightLoads == other.inFlightLoads &&
+            entries == other.entries &&
+            meanLoadMillis == other.meanLoadMillis &&
+            maxLoadMillis == other.maxLoadMillis &&
+            loadLatencyHistogram.contentEquals(other.loadLatencyHistogram) &&
+            lastClearDurationMillis == other.lastClearDurationMillis &&
+            lastClearAtMillis == other.lastClearAtMillis
+    }
+
+    override fun hashCode(): Int {
+        var result = cacheName.hashCode()
+        result = 31 * result + requests.hashCode()
+        result = 31 * result + hits.hashCode()
+        result = 31 * result + misses.hashCode()
+        result = 31 * result + loads.hashCode()
+        result = 31 * result + loadFailures.hashCode()
+        result = 31 * result + coalescedLoads.hashCode()
+        result = 31 * result + staleReloads.hashCode()
+        result = 31 * result + staleServed.hashCode()
+        result = 31 * result + staleEntries
+        result = 31 * result + inFlightLoads
+        result = 31 * result + entries
+        result = 31 * result + meanLoadMillis.hashCode()
+        result = 31 * result + maxLoadMillis.hashCode()
+        result = 31 * result + loadLatencyHistogram.contentHashCode()
+        result = 31 * result + lastClearDurationMillis.hashCode()
+        result = 31 * result + lastClearAtMillis.hashCode()
+        return result
+    }
+
+    override fun toString(): String =
+        "CacheMetricsSnapshot(cacheName=$cacheName, requests=$requests, hits=$hits, misses=$misses, loads=$loads, " +
+            "loadFailures=$loadFailures, coalescedLoads=$coalescedLoads, staleReloads=$staleReloads, " +
+            "staleServed=$staleServed, staleEntries=$staleEntries, " +
+            "inFlightLoads=$inFlightLoads, entries=$entries, meanLoadMillis=$meanLoadMillis, maxLoadMillis=$maxLoadMillis, " +
+            "loadLatencyHistogram=${loadLatencyHistogram.contentToString()}, " +
+            "lastClearDurationMillis=$lastClearDurationMillis, lastClearAtMillis=$lastClearAtMillis)"
+}
+
+/** Metrics of every tracked cache of one service by cache name. */
+class CacheMetricsRegistry {
+
+    private val byCacheName = ConcurrentHashMap<String, CacheMetrics>()
+
+    fun forCache(cacheName: String): CacheMetrics = byCacheName.computeIfAbsent(cacheName) { CacheMetrics(it) }
+
+    fun find(cacheName: String): CacheMetrics? = byCacheName[cacheName]
+
+    fun all(): Collection<CacheMetrics> = byCacheName.values
+}
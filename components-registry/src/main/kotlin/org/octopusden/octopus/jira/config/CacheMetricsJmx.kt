@@ -0,0 +1,103 @@
+package org.octopusden.octopus.jira.config
+
+import java.lang.management.ManagementFactory
+import javax.management.InstanceAlreadyExistsException
+import javax.management.InstanceNotFoundException
+import javax.management.ObjectName
+import org.slf4j.LoggerFactory
+
+/**
+ * JMX view of one cache, registered as `org.octopusden.octopus.jira:type=ComponentRegistryCache,name=<CacheId>`.
+ */
+interface CacheMetricsMXBean {
+    val requests: Long
+    val hits: Long
+    val misses: Long
+    val hitRatio: Double
+    val loads: Long
+    val loadFailures: Long
+    val coalescedLoads: Long
+    val staleReloads: Long
+    val staleServed: Long
+    val staleEntries: Int
+    val inFlightLoads: Int
+    val entries: Int
+    val meanLoadMillis: Double
+    val maxLoadMillis: Long
+
+    /** Load counts per bucket, see [loadLatencyBucketBoundsMillis]. */
+    val loadLatencyHistogram: LongArray
+
+    /** Upper bounds in ms of the [loadLatencyHistogram] buckets, the last bucket is open. */
+    val loadLatencyBucketBoundsMillis: LongArray
+    val lastClearDurationMillis: Long
+    val lastClearAtMillis: Long
+}
+
+/** Every attribute reads its own counter, the cache key set is only read for [entries]. */
+internal class CacheMetricsMXBeanImpl(private val metrics: CacheMetrics) : CacheMetricsMXBean {
+    override val requests: Long get() = metrics.requestCount
+    override val hits: Long get() = metrics.hitCount
+    override val misses: Long get() = metrics.missCount
+    override val hitRatio: Double get() = metrics.hitRatio
+    override val loads: Long get() = metrics.loadCount
+    override val loadFailures: Long get() = metrics.loadFailureCount
+    override val coalescedLoads: Long get() = metrics.coalescedCount
+    override val staleReloads: Long get() = metrics.staleReloadCount
+    override val staleServed: Long get() = metrics.staleServedCount
+    override val staleEntries: Int get() = metrics.staleEntryCount
+    override val inFlightLoads: Int get() = metrics.inFlightCount
+    override val entries: Int get() = metrics.entryCount
+    override val meanLoadMillis: Double get() = metrics.meanLoadMillis
+    override val maxLoadMillis: Long get() = metrics.maxLoadMillis
+    override val loadLatencyHistogram: LongArray get() = metrics.loadLatencyHistogram
+    override val loadLatencyBucketBoundsMillis: LongArray get() = CacheMetrics.LOAD_LATENCY_BUCKET_BOUNDS_MILLIS.copyOf()
+    override val lastClearDurationMillis: Long get() = metrics.lastClearDurationMillis
+    override val lastClearAtMillis: Long get() = metrics.lastClearAtMillis
+}
+
+internal object CacheMetricsJmx {
+    private const val DOMAIN = "org.octopusden.octopus.jira"
+
+    private val log = LoggerFactory.getLogger(CacheMetricsJmx::class.java)
+
+    /**
+     * Registers an MBean per cache in the platform MBean server. A bean left by a previous instance of the service
+     * (e.g. after a plugin reload) is replaced, so the exposed numbers always belong to the live caches.
+     *
+     * @return names of the registered beans, to be passed to [unregister] when the service is closed
+     */
+    fun register(metricsByCacheId: Map<CacheId, CacheMetrics>): List<ObjectName> {
+        val server = ManagementFactory.getPlatformMBeanServer()
+        val registered = ArrayList<ObjectName>(metricsByCacheId.size)
+        for ((cacheId, metrics) in metricsByCacheId) {
+            val name = ObjectName("$DOMAIN:type=ComponentRegistryCache,name=${cacheId.name}")
+            try {
+                try {
+                    server.registerMBean(CacheMetricsMXBeanImpl(metrics), name)
+                } catch (e: InstanceAlreadyExistsException) {
+                    server.unregisterMBean(name)
+                    server.registerMBean(CacheMetricsMXBeanImpl(metrics), name)
+                }
+                registered += name
+            } catch (e: Exception) {
+                log.warn("Unable to register cache metrics MBean '{}': {}", name, e.message)
+            }
+        }
+        return registered
+    }
+
+    /** Unregisters the beans, names no longer registered are skipped. */
+    fun unregister(names: Collection<ObjectName>) {
+        val server = ManagementFactory.getPlatformMBeanServer()
+        for (name in names) {
+            try {
+                server.unregisterMBean(name)
+            } catch (e: InstanceNotFoundException) {
+                log.debug("Cache metrics MBean '{}' is not registered", name)
+            } catch (e: Exception) {
+                log.warn("Unable to unregister cache metrics MBean '{}': {}", name, e.message)
+            }
+        }
+    }
+}
@@ -64,4 +64,20 @@ interface ComponentRegistryService {
     fun getComponentVersionFormatter(): JiraComponentVersionFormatter
 
     fun getDetailedComponent(component: String, version: String): DetailedComponent
+
+    fun getJiraComponentsByProjectAndVersions(jiraProjectVersions: Collection<JiraProjectVersion>): Map<JiraProjectVersion, Optional<JiraComponentVersion>>
+
+    fun getJiraComponentsByComponentNameAndVersions(componentVersions: Collection<ComponentVersion>): Map<ComponentVersion, Optional<JiraComponentVersion>>
+
+    fun getDistributionsByJiraProjectVersions(jiraProjectVersions: Collection<JiraProjectVersion>): Map<JiraProjectVersion, Optional<Distribution>>
+
+    fun getDistributionsByComponentVersions(componentVersions: Collection<ComponentVersion>): Map<ComponentVersion, Optional<Distribution>>
+
+    fun areVersionsMinor(versions: Collection<Version>): Map<Version, Boolean>
+
+    fun getCacheMetrics(): Map<CacheId, CacheMetricsSnapshot>
+
+    fun getStaleCaches(): Set<CacheId>
+
+    fun isStale(cacheId: CacheId, key: Any): Boolean
 }
@@ -5,10 +5,18 @@ import com.atlassian.cache.CacheManager
 import com.atlassian.jira.project.Project
 import com.atlassian.jira.project.version.Version
 import feign.FeignException
+import java.io.File
 import java.util.Optional
-import java.util.SortedSet
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 import javax.inject.Inject
 import javax.inject.Named
+import javax.management.ObjectName
 import org.octopusden.octopus.components.registry.client.ComponentsRegistryServiceClient
 import org.octopusden.octopus.components.registry.core.dto.ComponentInfoDTO
 import org.octopusden.octopus.components.registry.core.dto.ComponentVersionFormatDTO
@@ -21,6 +29,7 @@ import org.octopusden.octopus.components.registry.core.dto.VcsRootDateDTO
 import org.octopusden.octopus.components.registry.core.dto.VersionControlSystemRootDTO
 import org.octopusden.octopus.components.registry.core.dto.VersionNamesDTO
 import org.octopusden.octopus.components.registry.core.dto.VersionRequest
+import org.octopusden.octopus.components.registry.core.exceptions.NotFoundException
 import org.octopusden.octopus.jira.exception.JiraApplicationException
 import org.octopusden.octopus.jira.model.Component
 import org.octopusden.octopus.jira.model.ComponentRegistryVersion
@@ -44,70 +53,144 @@ import org.octopusden.releng.versions.ComponentVersionFormat
 import org.octopusden.releng.versions.VersionNames
 import org.slf4j.LoggerFactory
 
+/**
+ * Registry client with per-key caches. The service owns background threads (snapshot refresh, parallel registry
+ * calls, async lookups) and cache metrics MBeans; [close] releases them and is called by the container when the bean
+ * is destroyed.
+ */
 @Named
 @Suppress("unused")
-class ComponentRegistryServiceImpl @Inject constructor(
+class ComponentRegistryServiceImpl(
         private val client: ComponentsRegistryServiceClient,
-        private val cacheManager: CacheManager
-) : ComponentRegistryService {
+        private val cacheManager: CacheManager,
+        private val settings: ComponentRegistryServiceSettings
+) : ComponentRegistryService, AsyncComponentRegistryService, AutoCloseable {
 
-    private lateinit var versionNames: VersionNames
+    @Inject
+    constructor(client: ComponentsRegistryServiceClient, cacheManager: CacheManager) :
+            this(client, cacheManager, ComponentRegistryServiceSettings())
 
-    private val jiraComponentVersionFormatter = createJiraComponentVersionFormatter()
+    /** Shares equal model values between the snapshot and all caches, see [RegistryModelInterner]. */
+    private val modelInterner = RegistryModelInterner()
+
+    /**
+     * Written by the snapshot refresh thread with a single write, read by request threads: a reader never sees the
+     * snapshot of one generation with the formatter of another.
+     */
+    @Volatile
+    private var published = initialPublishedState()
+
+    /**
+     * Current generation of the hot datasets in [ComponentRegistryServiceSettings.RefreshMode.SNAPSHOT] mode,
+     * null until the first refresh completes (reads go to the caches until then) unless it was saved to
+     * [ComponentRegistryServiceSettings.snapshotFile] by a previous run.
+     */
+    private val snapshot: RegistrySnapshot?
+        get() = published.snapshot
+
+    /** Version names [jiraComponentVersionFormatter] was created with, also used to parse version ranges. */
+    private val formatterVersionNames: VersionNames
+        get() = published.formatterVersionNames
+
+    private val jiraComponentVersionFormatter: JiraComponentVersionFormatter
+        get() = published.formatter
 
     @Volatile
     private var fixedRemoteStatus: Any? = null
 
     private val loaderTracker = LoaderTracker()
 
-    private val allComponentsCache = cacheManager.trackedCache(CacheId.ALL_COMPONENTS, loaderTracker) { _: Unit ->
+    private val snapshotRefreshEnabled = settings.refreshMode == ComponentRegistryServiceSettings.RefreshMode.SNAPSHOT
+
+    private var snapshotRefresh: CompletableFuture<UpdateCacheResult>? = null
+
+    @Volatile
+    private var versionRangeIndex: VersionRangeIndex? = null
+
+    /** [System.nanoTime] of the last failed load of the version ranges for the index, null after a success. */
+    @Volatile
+    private var versionRangeIndexFailedAtNanos: Long? = null
+
+    private val lazySnapshotRefreshExecutor = lazy {
+        Executors.newSingleThreadExecutor(daemonThreadFactory("components-registry-snapshot-refresh"))
+    }
+
+    private val snapshotRefreshExecutor: ExecutorService by lazySnapshotRefreshExecutor
+
+    private val lazyRemoteCallExecutor = lazy {
+        Executors.newFixedThreadPool(settings.remoteCallParallelism, daemonThreadFactory("components-registry-remote"))
+    }
+
+    /** Bounds the number of concurrent registry calls issued in parallel by this service. */
+    private val remoteCallExecutor: ExecutorService by lazyRemoteCallExecutor
+
+    private val lazyAsyncLookupExecutor = lazy {
+        Executors.newFixedThreadPool(settings.asyncLookupParallelism, daemonThreadFactory("components-registry-async"))
+    }
+
+    /**
+     * Runs the lookups of [AsyncComponentRegistryService] that have to ask the registry. Separate from
+     * [remoteCallExecutor] because such a lookup may itself wait for chunks running there.
+     */
+    private val asyncLookupExecutor: ExecutorService by lazyAsyncLookupExecutor
+
+    private val staleWhileRevalidate: StaleWhileRevalidate? = if (settings.staleWhileRevalidate) {
+        StaleWhileRevalidate(
+            settings.softTtlMillis,
+            settings.staleRetryAfterMillis,
+            settings.staleMaxAgeMillis,
+            settings.staleMaxEntries
+        ) { task -> remoteCallExecutor.execute(task) }
+    } else {
+        null
+    }
+
+    private val allComponentsCache = cacheManager.trackedCache(CacheId.ALL_COMPONENTS, loaderTracker, staleWhileRevalidate) { _: Unit ->
         client.getAllComponents().components.map { it.toModel() }
     }
 
-    private val componentsCache = cacheManager.trackedCache(CacheId.COMPONENT, loaderTracker) { component: String ->
+    private val componentsCache = cacheManager.trackedCache(CacheId.COMPONENT, loaderTracker, staleWhileRevalidate) { component: String ->
         val componentDto = clearResponse {
             client.getById(component).toModel()
         }
         Optional.ofNullable(componentDto)
     }
 
-    private val isMinorVersionCache = cacheManager.trackedCache(CacheId.IS_VERSION_MINOR, loaderTracker) { version: Version ->
-        val project = version.project
-        val jiraComponentVersion = getJiraComponentByProjectAndVersion(JiraProjectVersion(project.key, version.name))
+    /** Keys of the caches of Jira versions, see [JiraProjectVersionKeys]. */
+    private val versionKeys = JiraProjectVersionKeys()
+
+    private val isMinorVersionCache = cacheManager.trackedCache(CacheId.IS_VERSION_MINOR, loaderTracker, staleWhileRevalidate) { version: JiraProjectVersion ->
+        val jiraComponentVersion = getJiraComponentByProjectAndVersion(version)
         jiraComponentVersion.map { jiraComponentVersionValue ->
-            jiraComponentVersionFormatter.matchesMajorVersionFormat(jiraComponentVersionValue, version.name)
+            jiraComponentVersionFormatter.matchesMajorVersionFormat(jiraComponentVersionValue, version.version)
         }.orElseGet {
-            log.error("Version ${project.key}:${version.name} is not found in Components Registry")
+            log.error("Version ${version.projectKey}:${version.version} is not found in Components Registry")
             false
         }
     }
 
-    private val minorVersionByVersionCache = cacheManager.trackedCache(CacheId.MINOR_VERSION_BY_VERSION, loaderTracker) { version: Version ->
-        getMinorVersion(version.name, version.project)
+    private val minorVersionByVersionNameAndProjectCache = cacheManager.trackedCache(CacheId.MINOR_VERSION_BY_VERSION_NAME_AND_PROJECT, loaderTracker, staleWhileRevalidate) { version: JiraProjectVersion ->
+        getJiraComponentByProjectAndVersion(version)
+                .map { jcv -> jiraComponentVersionFormatter.formatMajorVersionFormat(jcv.component, version.version) }
     }
 
-    private data class MinorVersionCacheReq(val versionName: String, val project: Project)
-
-    private val minorVersionByVersionNameAndProjectCache = cacheManager.trackedCache(CacheId.MINOR_VERSION_BY_VERSION_NAME_AND_PROJECT, loaderTracker) { req: MinorVersionCacheReq ->
-        getJiraComponentByProjectAndVersion(JiraProjectVersion(req.project.key, req.versionName))
-                .map { jcv -> jiraComponentVersionFormatter.formatMajorVersionFormat(jcv.component, req.versionName) }
-    }
-
-    private val jiraComponentByProjectAndVersion = cacheManager.trackedCache(CacheId.JIRA_COMPONENT_BY_PROJECT_VERSION, loaderTracker) { jiraProjectVersion: JiraProjectVersion ->
+    private val jiraComponentByProjectAndVersion = cacheManager.trackedCache(CacheId.JIRA_COMPONENT_BY_PROJECT_VERSION, loaderTracker, staleWhileRevalidate) { jiraProjectVersion: JiraProjectVersion ->
         val jiraComponentVersion = clearResponse {
             client.getJiraComponentByProjectAndVersion(jiraProjectVersion.projectKey, jiraProjectVersion.version)
-                    .toModel()
+                    .toModel { componentVersion ->
+                        isHotfixEnabled(componentVersion) { vcsSettingsByJiraProjectVersionCache.peek(jiraProjectVersion) }
+                    }
         }
         Optional.ofNullable(jiraComponentVersion)
     }
 
-    private val jiraComponentsByProjectCache = cacheManager.trackedCache(CacheId.JIRA_COMPONENTS_BY_PROJECT_KEY, loaderTracker) { projectKey: String ->
+    private val jiraComponentsByProjectCache = cacheManager.trackedCache(CacheId.JIRA_COMPONENTS_BY_PROJECT_KEY, loaderTracker, staleWhileRevalidate) { projectKey: String ->
         clearResponse {
             client.getJiraComponentsByProject(projectKey)
         } ?: emptySet()
     }
 
-    private val jiraComponentVersionRangesByProjectCache = cacheManager.trackedCache(CacheId.JIRA_COMPONENT_VERSION_RANGES_BY_PROJECT_KEY, loaderTracker) { projectKey: String ->
+    private val jiraComponentVersionRangesByProjectCache = cacheManager.trackedCache(CacheId.JIRA_COMPONENT_VERSION_RANGES_BY_PROJECT_KEY, loaderTracker, staleWhileRevalidate) { projectKey: String ->
         clearResponse {
             client.getJiraComponentVersionRangesByProject(projectKey)
                     .map { it.toModel() }
@@ -115,7 +198,7 @@ class ComponentRegistryServiceImpl @Inject constructor(
         } ?: emptySet()
     }
 
-    private val distributionCacheByJiraProjectVersion = cacheManager.trackedCache(CacheId.DISTRIBUTION_BY_JIRA_PROJECT_VERSION, loaderTracker) { jiraProjectVersion: JiraProjectVersion ->
+    private val distributionCacheByJiraProjectVersion = cacheManager.trackedCache(CacheId.DISTRIBUTION_BY_JIRA_PROJECT_VERSION, loaderTracker, staleWhileRevalidate) { jiraProjectVersion: JiraProjectVersion ->
         val distribution = clearResponse {
             client.getDistributionForProject(jiraProjectVersion.projectKey, jiraProjectVersion.version)
                     .toModel()
@@ -123,7 +206,7 @@ class ComponentRegistryServiceImpl @Inject constructor(
         Optional.ofNullable(distribution)
     }
 
-    private val distributionByComponentVersionCache = cacheManager.trackedCache(CacheId.DISTRIBUTION_BY_COMPONENT_VERSION, loaderTracker) { componentVersion: ComponentVersion ->
+    private val distributionByComponentVersionCache = cacheManager.trackedCache(CacheId.DISTRIBUTION_BY_COMPONENT_VERSION, loaderTracker, staleWhileRevalidate) { componentVersion: ComponentVersion ->
         val distribution = clearResponse {
             client.getComponentDistribution(componentVersion.componentName, componentVersion.version)
                     .toModel()
@@ -131,7 +214,8 @@ class ComponentRegistryServiceImpl @Inject constructor(
         Optional.ofNullable(distribution)
     }
 
-    private val vcsSettingsByJiraProjectVersionCache = cacheManager.trackedCache(CacheId.VCS_SETTINGS_BY_JIRA_PROJECT_VERSION, loaderTracker) { jiraProjectVersion: JiraProjectVersion ->
+    /** On demand, so conversions can read the hotfix flag without loading, see [isHotfixEnabled]. */
+    private val vcsSettingsByJiraProjectVersionCache = cacheManager.trackedOnDemandCache(CacheId.VCS_SETTINGS_BY_JIRA_PROJECT_VERSION, loaderTracker, staleWhileRevalidate) { jiraProjectVersion: JiraProjectVersion ->
         val vcsSettings = clearResponse {
             client.getVCSSettingForProject(jiraProjectVersion.projectKey, jiraProjectVersion.version)
                     .toModel()
@@ -139,7 +223,8 @@ class ComponentRegistryServiceImpl @Inject constructor(
         Optional.ofNullable(vcsSettings)
     }
 
-    private val vcsSettingsByComponentVersionCache = cacheManager.trackedCache(CacheId.VCS_SETTINGS_BY_COMPONENT_VERSION, loaderTracker) { componentVersion: ComponentVersion ->
+    /** On demand, so conversions can read the hotfix flag without loading, see [isHotfixEnabled]. */
+    private val vcsSettingsByComponentVersionCache = cacheManager.trackedOnDemandCache(CacheId.VCS_SETTINGS_BY_COMPONENT_VERSION, loaderTracker, staleWhileRevalidate) { componentVersion: ComponentVersion ->
         val vcsSettings = clearResponse {
             client.getVCSSetting(componentVersion.componentName, componentVersion.version)
                     .toModel()
@@ -148,24 +233,14 @@ class ComponentRegistryServiceImpl @Inject constructor(
         Optional.ofNullable(vcsSettings)
     }
 
-    private data class DetailedComponentVersionsCacheRequest(val component: String, val versions: SortedSet<String>)
-
     private data class DetailedComponentCacheRequest(val component: String, val version: String)
 
-    private val detailedComponentVersionsCache = cacheManager.trackedCache(CacheId.DETAILED_COMPONENT_VERSIONS, loaderTracker) { req: DetailedComponentVersionsCacheRequest ->
-        DetailedComponentVersions(
-            req.versions.chunked(50) {
-                client.getDetailedComponentVersions(req.component, VersionRequest(it)).versions.mapValues { entry -> entry.value.toModel() }
-            }.fold(mutableMapOf()) { result, element -> result.apply { putAll(element) } }
-        )
-    }
-
-    private val detailedComponentCache = cacheManager.trackedCache(CacheId.DETAILED_COMPONENT, loaderTracker) { req: DetailedComponentCacheRequest ->
+    private val detailedComponentCache = cacheManager.trackedCache(CacheId.DETAILED_COMPONENT, loaderTracker, staleWhileRevalidate) { req: DetailedComponentCacheRequest ->
         client.getDetailedComponent(req.component, req.version)
             .toModel()
     }
 
-    private val componentsDistributionByJiraProjectCache = cacheManager.trackedCache(CacheId.DISTRIBUTION_BY_PROJECT_KEY, loaderTracker) { projectKey: String ->
+    private val componentsDistributionByJiraProjectCache = cacheManager.trackedCache(CacheId.DISTRIBUTION_BY_PROJECT_KEY, loaderTracker, staleWhileRevalidate) { projectKey: String ->
         clearResponse {
             client.getComponentsDistributionByJiraProject(projectKey)
                     .map { it.key to it.value.toModel() }
@@ -173,29 +248,15 @@ class ComponentRegistryServiceImpl @Inject constructor(
         } ?: emptyMap()
     }
 
-    private val componentExistsByJiraProjectVersionCache = cacheManager.trackedCache(CacheId.IS_COMPONENT_EXISTS_BY_PROJECT_VERSION, loaderTracker) { jiraProjectVersion: JiraProjectVersion ->
-        clearResponse {
-            client.getJiraComponentByProjectAndVersion(jiraProjectVersion.projectKey, jiraProjectVersion.version)
-            true
-        } ?: false
-    }
-
-    private val componentExistsByJiraProjectCache = cacheManager.trackedCache(CacheId.IS_COMPONENT_EXISTS_BY_PROJECT_KEY, loaderTracker) { projectKey: String ->
-        clearResponse {
-            client.getJiraComponentsByProject(projectKey)
-                    .isNotEmpty()
-        } ?: false
-    }
-
-    private val jiraComponentByComponentNameAndVersionCache = cacheManager.trackedCache(CacheId.JIRA_COMPONENT_BY_COMPONENT_VERSION, loaderTracker) { componentVersion: ComponentVersion ->
+    private val jiraComponentByComponentNameAndVersionCache = cacheManager.trackedCache(CacheId.JIRA_COMPONENT_BY_COMPONENT_VERSION, loaderTracker, staleWhileRevalidate) { componentVersion: ComponentVersion ->
         val jiraComponentVersion = clearResponse {
             client.getJiraComponentForComponentAndVersion(componentVersion.componentName, componentVersion.version)
-                    .toModel()
+                    .toModel { isHotfixEnabled(it) { vcsSettingsByComponentVersionCache.peek(componentVersion) } }
         }
         Optional.ofNullable(jiraComponentVersion)
     }
 
-    private val allJiraComponentVersionRangesCache = cacheManager.trackedCache(CacheId.ALL_JIRA_COMPONENT_VERSION_RANGES, loaderTracker) { _: Unit ->
+    private val allJiraComponentVersionRangesCache = cacheManager.trackedCache(CacheId.ALL_JIRA_COMPONENT_VERSION_RANGES, loaderTracker, staleWhileRevalidate) { _: Unit ->
         clearResponse {
             client.getAllJiraComponentVersionRanges()
                     .map { it.toModel() }
@@ -203,23 +264,23 @@ class ComponentRegistryServiceImpl @Inject constructor(
         } ?: emptySet()
     }
 
-    private val detailedComponentVersionCache = cacheManager.trackedCache(CacheId.DETAILED_COMPONENT_VERSION, loaderTracker) { componentVersion: ComponentVersion ->
+    /** Misses of batch lookups are loaded together, see [getDetailedComponentVersions]. */
+    private val detailedComponentVersionCache = cacheManager.trackedOnDemandCache(CacheId.DETAILED_COMPONENT_VERSION, loaderTracker, staleWhileRevalidate) { componentVersion: ComponentVersion ->
         client.getDetailedComponentVersion(componentVersion.componentName, componentVersion.version)
                 .toModel()
     }
 
-    private fun createJiraComponentVersionFormatter(): JiraComponentVersionFormatter {
-        return JiraComponentVersionFormatter(getVersionNames())
+    private fun initialPublishedState(): PublishedState {
+        val persisted = settings.snapshotFile?.let { readSnapshotFile(it) }
+        return PublishedState(persisted, persisted?.versionNames ?: client.getVersionNames().toModel())
     }
 
     override fun getAllComponents(): List<Component> {
-        return allComponentsCache.get(Unit)!!
+        return snapshot?.allComponents ?: allComponentsCache.get(Unit)!!
     }
 
     override fun getVersionNames(): VersionNames {
-        if (::versionNames.isInitialized) {
-            return versionNames
-        }
+        snapshot?.let { return it.versionNames }
         val vn = client.getVersionNames()
         return vn.toModel()
     }
@@ -231,30 +292,51 @@ class ComponentRegistryServiceImpl @Inject constructor(
     override fun getComponentVersionFormatter() = jiraComponentVersionFormatter
 
     override fun isVersionMinor(version: Version): Boolean {
-        return isMinorVersionCache.get(version)!!
+        prefetchVersionRangeIndex()
+        return isMinorVersionCache.get(versionKeys.of(version))!!
     }
 
     override fun getMinorVersion(version: Version): Optional<String> {
-        return minorVersionByVersionCache.get(version)!!
+        prefetchVersionRangeIndex()
+        return minorVersionByVersionNameAndProjectCache.get(versionKeys.of(version))!!
     }
 
     override fun getMinorVersion(versionName: String, project: Project): Optional<String> {
-        return minorVersionByVersionNameAndProjectCache.get(MinorVersionCacheReq(versionName, project))!!
+        prefetchVersionRangeIndex()
+        return minorVersionByVersionNameAndProjectCache.get(versionKeys.of(project.key, versionName))!!
     }
 
     override fun getJiraComponentByProjectAndVersion(jiraProjectVersion: JiraProjectVersion): Optional<JiraComponentVersion> {
+        // Loads the index even when local resolution is off, conversions read hotfix information from it
+        val index = versionRangeIndex()
+        val range = if (settings.resolveVersionRangesLocally) index?.findByProject(jiraProjectVersion.projectKey, jiraProjectVersion.version) else null
+        if (range != null) {
+            val componentVersion = ComponentVersion.create(range.componentName, jiraProjectVersion.version)
+            return Optional.of(JiraComponentVersion(componentVersion, range.jiraComponent, jiraComponentVersionFormatter))
+        }
+        if (index == null && !jiraComponentByProjectAndVersion.containsKey(jiraProjectVersion)) {
+            prefetchHotfixSettings(jiraProjectVersion) { getVCSSettings(jiraProjectVersion) }
+        }
         return jiraComponentByProjectAndVersion.get(jiraProjectVersion)!!
     }
 
     override fun getJiraComponentsByProject(projectName: String): Set<String> {
-        return jiraComponentsByProjectCache.get(projectName)!!
+        return localVersionRangeIndex()?.getComponentNames(projectName) ?: jiraComponentsByProjectCache.get(projectName)!!
     }
 
     override fun getJiraComponentVersionRangesByProject(projectKey: String): Set<JiraComponentVersionRange> {
+        val currentSnapshot = snapshot
+        if (currentSnapshot != null) {
+            return currentSnapshot.jiraComponentVersionRangesByProject[projectKey] ?: emptySet()
+        }
         return jiraComponentVersionRangesByProjectCache.get(projectKey)!!
     }
 
     override fun getDistribution(jiraProjectVersion: JiraProjectVersion): Optional<Distribution> {
+        val distribution = findLocalRange(jiraProjectVersion)?.distribution
+        if (distribution != null && !distribution.GAV.contains('$')) {
+            return Optional.of(distribution)
+        }
         return distributionCacheByJiraProjectVersion.get(jiraProjectVersion)!!
     }
 
@@ -263,43 +345,209 @@ class ComponentRegistryServiceImpl @Inject constructor(
     }
 
     override fun getVCSSettings(jiraProjectVersion: JiraProjectVersion): Optional<VCSSettings> {
-        return vcsSettingsByJiraProjectVersionCache.get(jiraProjectVersion)!!
+        val vcsSettings = findLocalRange(jiraProjectVersion)?.vcsSettings
+        if (vcsSettings != null && !isVersionDependent(vcsSettings)) {
+            return Optional.of(vcsSettings)
+        }
+        return vcsSettingsByJiraProjectVersionCache.getOrLoad(jiraProjectVersion)
     }
 
     override fun getVCSSettings(componentVersion: ComponentVersion): Optional<VCSSettings> {
-        return vcsSettingsByComponentVersionCache.get(componentVersion)!!
+        return vcsSettingsByComponentVersionCache.getOrLoad(componentVersion)
     }
 
     override fun getComponentsDistributionByJiraProject(projectKey: String): Map<String, Distribution> {
         return componentsDistributionByJiraProjectCache.get(projectKey)!!
     }
 
+    /** Derived from the Jira component lookup, existence is not cached on its own. */
     override fun componentExists(projectVersion: JiraProjectVersion): Boolean {
-        return componentExistsByJiraProjectVersionCache.get(projectVersion)!!
+        return findLocalRange(projectVersion) != null || jiraComponentByProjectAndVersion.get(projectVersion)!!.isPresent
     }
 
+    /** Derived from the components of the project, existence is not cached on its own. */
     override fun componentExists(projectKey: String): Boolean {
-        return componentExistsByJiraProjectCache.get(projectKey)!!
+        return getJiraComponentsByProject(projectKey).isNotEmpty()
     }
 
     override fun getJiraComponentByComponentNameAndVersion(componentVersion: ComponentVersion): Optional<JiraComponentVersion> {
+        prefetchVersionRangeIndex()
+        if (!jiraComponentByComponentNameAndVersionCache.containsKey(componentVersion) && hotfixEnabledByRanges(componentVersion) == null) {
+            prefetchHotfixSettings(componentVersion) { getVCSSettings(componentVersion) }
+        }
         return jiraComponentByComponentNameAndVersionCache.get(componentVersion)!!
     }
 
     override fun getAllJiraComponentVersionRanges(): Set<JiraComponentVersionRange> {
-        return allJiraComponentVersionRangesCache.get(Unit)!!
+        return snapshot?.allJiraComponentVersionRanges ?: allJiraComponentVersionRangesCache.get(Unit)!!
     }
 
     override fun getDetailedComponentVersion(componentVersion: ComponentVersion): DetailedComponentVersion {
-        return detailedComponentVersionCache.get(componentVersion)!!
+        return detailedComponentVersionCache.getOrLoad(componentVersion)
     }
 
+    /**
+     * Assembles the result from per-version entries of the [CacheId.DETAILED_COMPONENT_VERSION] cache, versions
+     * missing there are requested in one batch (see [fetchDetailedComponentVersions]) and stored as entries.
+     */
     override fun getDetailedComponentVersions(component: String, versions: Set<String>): DetailedComponentVersions {
-        return detailedComponentVersionsCache.get(DetailedComponentVersionsCacheRequest(component, versions.toSortedSet()))!!
+        val found = HashMap<String, DetailedComponentVersion>(versions.size * 4 / 3 + 1)
+        val missing = ArrayList<String>()
+        for (version in versions) {
+            val key = ComponentVersion.create(component, version)
+            val cached = detailedComponentVersionCache.get(key)
+            if (cached != null) {
+                found[version] = cached
+            } else {
+                missing += version
+            }
+        }
+        if (missing.isEmpty()) {
+            return DetailedComponentVersions(found)
+        }
+        val cacheName = CacheId.DETAILED_COMPONENT_VERSION.id()
+        val generation = loaderTracker.generationOf(cacheName)
+        val fetched = fetchDetailedComponentVersions(component, missing)
+        // Same fence as cache loaders: entries fetched across a clean are returned but not stored.
+        if (loaderTracker.generationOf(cacheName) == generation) {
+            fetched.versions.forEach { (version, detailedVersion) ->
+                detailedComponentVersionCache.putIfAbsent(ComponentVersion.create(component, version), detailedVersion)
+            }
+        }
+        found.putAll(fetched.versions)
+        return DetailedComponentVersions(found, fetched.errors)
+    }
+
+    override fun getAllComponentsAsync(): CompletableFuture<List<Component>> =
+        lookupAsync(snapshot != null || allComponentsCache.containsKey(Unit)) { getAllComponents() }
+
+    override fun getComponentAsync(component: String): CompletableFuture<Optional<Component>> =
+        lookupAsync(componentsCache.containsKey(component)) { getComponent(component) }
+
+    override fun getJiraComponentByProjectAndVersionAsync(jiraProjectVersion: JiraProjectVersion): CompletableFuture<Optional<JiraComponentVersion>> =
+        lookupAsync(isResolvedLocally(jiraProjectVersion) || jiraComponentByProjectAndVersion.containsKey(jiraProjectVersion)) {
+            getJiraComponentByProjectAndVersion(jiraProjectVersion)
+        }
+
+    override fun getJiraComponentByComponentNameAndVersionAsync(componentVersion: ComponentVersion): CompletableFuture<Optional<JiraComponentVersion>> =
+        lookupAsync(jiraComponentByComponentNameAndVersionCache.containsKey(componentVersion)) {
+            getJiraComponentByComponentNameAndVersion(componentVersion)
+        }
+
+    override fun componentExistsAsync(projectVersion: JiraProjectVersion): CompletableFuture<Boolean> =
+        lookupAsync(isResolvedLocally(projectVersion) || jiraComponentByProjectAndVersion.containsKey(projectVersion)) {
+            componentExists(projectVersion)
+        }
+
+    override fun getDistributionAsync(jiraProjectVersion: JiraProjectVersion): CompletableFuture<Optional<Distribution>> =
+        lookupAsync(isResolvedLocally(jiraProjectVersion) || distributionCacheByJiraProjectVersion.containsKey(jiraProjectVersion)) {
+            getDistribution(jiraProjectVersion)
+        }
+
+    override fun getDistributionAsync(componentVersion: ComponentVersion): CompletableFuture<Optional<Distribution>> =
+        lookupAsync(distributionByComponentVersionCache.containsKey(componentVersion)) { getDistribution(componentVersion) }
+
+    override fun getVCSSettingsAsync(jiraProjectVersion: JiraProjectVersion): CompletableFuture<Optional<VCSSettings>> =
+        lookupAsync(isResolvedLocally(jiraProjectVersion) || vcsSettingsByJiraProjectVersionCache.containsKey(jiraProjectVersion)) {
+            getVCSSettings(jiraProjectVersion)
+        }
+
+    override fun getVCSSettingsAsync(componentVersion: ComponentVersion): CompletableFuture<Optional<VCSSettings>> =
+        lookupAsync(vcsSettingsByComponentVersionCache.containsKey(componentVersion)) { getVCSSettings(componentVersion) }
+
+    override fun getAllJiraComponentVersionRangesAsync(): CompletableFuture<Set<JiraComponentVersionRange>> =
+        lookupAsync(snapshot != null || allJiraComponentVersionRangesCache.containsKey(Unit)) { getAllJiraComponentVersionRanges() }
+
+    override fun getDetailedComponentVersionAsync(componentVersion: ComponentVersion): CompletableFuture<DetailedComponentVersion> =
+        lookupAsync(detailedComponentVersionCache.containsKey(componentVersion)) { getDetailedComponentVersion(componentVersion) }
+
+    override fun getDetailedComponentVersionsAsync(component: String, versions: Set<String>): CompletableFuture<DetailedComponentVersions> =
+        lookupAsync(versions.all { detailedComponentVersionCache.containsKey(ComponentVersion.create(component, it)) }) {
+            getDetailedComponentVersions(component, versions)
+        }
+
+    override fun getDetailedComponentAsync(component: String, version: String): CompletableFuture<DetailedComponent> =
+        lookupAsync(detailedComponentCache.containsKey(DetailedComponentCacheRequest(component, version))) {
+            getDetailedComponent(component, version)
+        }
+
+    override fun getJiraComponentsByProjectAndVersions(jiraProjectVersions: Collection<JiraProjectVersion>): Map<JiraProjectVersion, Optional<JiraComponentVersion>> =
+        bulkLookup(jiraProjectVersions, { isResolvedLocally(it) || jiraComponentByProjectAndVersion.containsKey(it) }) {
+            getJiraComponentByProjectAndVersion(it)
+        }
+
+    override fun getJiraComponentsByComponentNameAndVersions(componentVersions: Collection<ComponentVersion>): Map<ComponentVersion, Optional<JiraComponentVersion>> =
+        bulkLookup(componentVersions, { jiraComponentByComponentNameAndVersionCache.containsKey(it) }) {
+            getJiraComponentByComponentNameAndVersion(it)
+        }
+
+    override fun getDistributionsByJiraProjectVersions(jiraProjectVersions: Collection<JiraProjectVersion>): Map<JiraProjectVersion, Optional<Distribution>> =
+        bulkLookup(jiraProjectVersions, { isResolvedLocally(it) || distributionCacheByJiraProjectVersion.containsKey(it) }) {
+            getDistribution(it)
+        }
+
+    override fun getDistributionsByComponentVersions(componentVersions: Collection<ComponentVersion>): Map<ComponentVersion, Optional<Distribution>> =
+        bulkLookup(componentVersions, { distributionByComponentVersionCache.containsKey(it) }) { getDistribution(it) }
+
+    override fun areVersionsMinor(versions: Collection<Version>): Map<Version, Boolean> =
+        bulkLookup(versions, { isMinorVersionCache.containsKey(versionKeys.of(it)) }) { isVersionMinor(it) }
+
+    /**
+     * Resolves distinct keys, in their iteration order. The version range index is published first so most
+     * project/version keys resolve in memory; keys which are neither resolved locally nor cached are looked up
+     * concurrently on [asyncLookupExecutor], one registry call per key at most (the caches coalesce equal misses).
+     */
+    private fun <K, V> bulkLookup(keys: Collection<K>, availableLocally: (K) -> Boolean, lookup: (K) -> V): Map<K, V> {
+        prefetchVersionRangeIndex()
+        val distinct = LinkedHashSet(keys)
+        val misses = distinct.filterNot(availableLocally)
+        val fetched = if (misses.size <= 1) {
+            misses.associateWith(lookup)
+        } else {
+            misses.map { key -> key to CompletableFuture.supplyAsync({ lookup(key) }, asyncLookupExecutor) }
+                .associate { (key, future) -> key to joinUnwrapped(future) }
+        }
+        val result = LinkedHashMap<K, V>(distinct.size * 4 / 3 + 1)
+        for (key in distinct) {
+            @Suppress("UNCHECKED_CAST")
+            result[key] = if (fetched.containsKey(key)) fetched[key] as V else lookup(key)
+        }
+        return result
     }
 
-    override fun getDetailedComponent(component: String, version: String): DetailedComponent
-    = detailedComponentCache.get(DetailedComponentCacheRequest(component, version))!!
+    private fun <T> joinUnwrapped(future: CompletableFuture<T>): T =
+        try {
+            future.join()
+        } catch (e: CompletionException) {
+            throw e.cause ?: e
+        }
+
+    /**
+     * Completes in the calling thread when the answer is in memory, otherwise runs the lookup on
+     * [asyncLookupExecutor]. The check only picks the thread, the lookup itself is the blocking method.
+     */
+    private fun <T> lookupAsync(availableLocally: Boolean, lookup: () -> T): CompletableFuture<T> {
+        if (!availableLocally) {
+            return CompletableFuture.supplyAsync({ lookup() }, asyncLookupExecutor)
+        }
+        val result = CompletableFuture<T>()
+        try {
+            result.complete(lookup())
+        } catch (e: Exception) {
+            result.completeExceptionally(e)
+        }
+        return result
+    }
+
+    /** Whether the published version range index answers the lookup without loading anything. */
+    private fun isResolvedLocally(jiraProjectVersion: JiraProjectVersion): Boolean =
+        settings.resolveVersionRangesLocally &&
+            versionRangeIndex?.findByProject(jiraProjectVersion.projectKey, jiraProjectVersion.version) != null
+
+    override fun getDetailedComponent(component: String, version: String): DetailedComponent {
+        prefetchVersionRangeIndex()
+        return detailedComponentCache.get(DetailedComponentCacheRequest(component, version))!!
+    }
 
     override fun checkCacheActualityAndClean(forceClean: Boolean): UpdateCacheResult {
         val serviceStatus = client.getServiceStatus()
@@ -308,7 +556,13 @@ class ComponentRegistryServiceImpl @Inject constructor(
         val previousFixedRemoteStatus = this.fixedRemoteStatus
         val needClean = forceClean || previousFixedRemoteStatus != remoteStatus
 
-        val message = if (needClean) {
+        val message = if (snapshotRefreshEnabled) {
+            if (needClean) {
+                if (refreshSnapshotAsync().isDone) "Refreshed CR snapshot" else "Started CR snapshot refresh"
+            } else {
+                "Skip refresh CR snapshot"
+            }
+        } else if (needClean) {
             val inFlightAtCleanStart = loaderTracker.inFlight.get()
 
             val failedCaches = clearAllCaches()
@@ -328,14 +582,14 @@ class ComponentRegistryServiceImpl @Inject constructor(
             }
 
             log.info(
-                "Cleaned CR cache: inFlightAtCleanStart={}, failedCaches={}",
-                inFlightAtCleanStart, failedCaches
+                "Cleaned CR cache: inFlightAtCleanStart={}, failedCaches={}, coalescedLoads={}",
+                inFlightAtCleanStart, failedCaches, loaderTracker.coalescedCounts()
             )
             if (inFlightAtCleanStart > 0) {
                 log.warn(
                     "{} loader call(s) were observed in flight just before clean started " +
-                        "(sampled, not a fence — actual overlap may be higher or lower). " +
-                        "Watch for 'POSSIBLE STALE REINSERT' warnings for authoritative race evidence.",
+                        "(sampled — actual overlap may be higher or lower). Loads racing with the clean are " +
+                        "re-executed by the generation fence; 'POSSIBLE STALE REINSERT' warnings mark the ones that gave up.",
                     inFlightAtCleanStart
                 )
             }
@@ -349,6 +603,155 @@ class ComponentRegistryServiceImpl @Inject constructor(
         )
     }
 
+    /**
+     * Index used for lookups, null when local resolution is switched off or the index is unavailable.
+     */
+    private fun localVersionRangeIndex(): VersionRangeIndex? =
+        if (settings.resolveVersionRangesLocally) versionRangeIndex() else null
+
+    /**
+     * Index over the current set of all version ranges, rebuilt when the revision of the
+     * [CacheId.ALL_JIRA_COMPONENT_VERSION_RANGES] cache changes (cache clean, snapshot swap or background refresh).
+     *
+     * The index is an optimization: when the ranges can't be loaded it is unavailable (null) and callers ask the
+     * registry per key. The load is not tried again for
+     * [ComponentRegistryServiceSettings.versionRangeIndexRetryAfterMillis], so a failing registry is not asked for
+     * all ranges on every lookup.
+     */
+    private fun versionRangeIndex(): VersionRangeIndex? {
+        // Read before the ranges: an index built from ranges loaded across a clean is keyed on the old revision
+        val revision = loaderTracker.revisionOf(CacheId.ALL_JIRA_COMPONENT_VERSION_RANGES.id())
+        val current = versionRangeIndex
+        if (current != null && current.revision == revision) {
+            return current
+        }
+        val failedAt = versionRangeIndexFailedAtNanos
+        if (failedAt != null && System.nanoTime() - failedAt < TimeUnit.MILLISECONDS.toNanos(settings.versionRangeIndexRetryAfterMillis)) {
+            return null
+        }
+        return try {
+            VersionRangeIndex(getAllJiraComponentVersionRanges(), formatterVersionNames, revision).also { index ->
+                versionRangeIndex = index
+                versionRangeIndexFailedAtNanos = null
+            }
+        } catch (e: Exception) {
+            versionRangeIndexFailedAtNanos = System.nanoTime()
+            log.warn(
+                "Unable to load version ranges, lookups go to the registry per key for the next {} ms",
+                settings.versionRangeIndexRetryAfterMillis, e
+            )
+            null
+        }
+    }
+
+    /**
+     * Publishes the version range index before a cache loader converts registry responses, so the conversion
+     * reads hotfix information from memory instead of loading other caches (see [isHotfixEnabled]).
+     */
+    private fun prefetchVersionRangeIndex() {
+        versionRangeIndex()
+    }
+
+    private fun findLocalRange(jiraProjectVersion: JiraProjectVersion): JiraComponentVersionRange? =
+        localVersionRangeIndex()?.findByProject(jiraProjectVersion.projectKey, jiraProjectVersion.version)
+
+    /**
+     * Starts building the next [RegistrySnapshot] in the background unless a refresh is already running.
+     * The snapshot is published only when it is complete; then the remaining caches are cleared and
+     * `fixedRemoteStatus` advances to the revision the snapshot was built for. A failed refresh leaves
+     * the previous snapshot, the caches and `fixedRemoteStatus` untouched, so the next tick retries.
+     *
+     * @return the running refresh
+     */
+    fun refreshSnapshotAsync(): CompletableFuture<UpdateCacheResult> = startSnapshotRefresh { refreshSnapshot() }
+
+    /**
+     * Compares the snapshot read from [ComponentRegistryServiceSettings.snapshotFile] with the remote status and
+     * refreshes it when the registry changed meanwhile.
+     */
+    private fun revalidatePersistedSnapshotAsync(persisted: RegistrySnapshot): CompletableFuture<UpdateCacheResult> = startSnapshotRefresh {
+        val serviceStatus = client.getServiceStatus()
+        val remoteStatus = serviceStatus.versionControlRevision ?: serviceStatus.cacheUpdatedAt
+        if (remoteStatus?.toString() == persisted.remoteStatus?.toString() && snapshot === persisted) {
+            fixedRemoteStatus = remoteStatus
+            log.info("Persisted CR snapshot of remoteStatus='{}' is up to date", remoteStatus)
+            UpdateCacheResult("Persisted CR snapshot remoteStatus='$remoteStatus' is up to date")
+        } else {
+            refreshSnapshot()
+        }
+    }
+
+    @Synchronized
+    private fun startSnapshotRefresh(task: () -> UpdateCacheResult): CompletableFuture<UpdateCacheResult> {
+        val running = snapshotRefresh
+        if (running != null && !running.isDone) {
+            return running
+        }
+        val refresh = CompletableFuture.supplyAsync({ task() }, snapshotRefreshExecutor)
+        refresh.whenComplete { _, e ->
+            if (e != null) {
+                log.warn("CR snapshot refresh failed, keeping snapshot of remoteStatus='{}'", snapshot?.remoteStatus, e)
+            }
+        }
+        snapshotRefresh = refresh
+        return refresh
+    }
+
+    private fun refreshSnapshot(): UpdateCacheResult {
+        val startedAt = System.nanoTime()
+        val serviceStatus = client.getServiceStatus()
+        val remoteStatus = serviceStatus.versionControlRevision ?: serviceStatus.cacheUpdatedAt
+        val next = RegistrySnapshot(
+            remoteStatus,
+            client.getVersionNames().toModel(),
+            client.getAllComponents().components.map { it.toModel() },
+            client.getAllJiraComponentVersionRanges().map { it.toModel() }.toSet()
+        )
+        val previous = snapshot
+        published = PublishedState(next, next.versionNames)
+
+        val failedCaches = clearAllCaches()
+        if (failedCaches.isEmpty()) {
+            this.fixedRemoteStatus = remoteStatus
+        } else {
+            log.warn(
+                "CR snapshot swapped but {} cache(s) failed to clear: {}. fixedRemoteStatus left unchanged so the next tick will retry.",
+                failedCaches.size, failedCaches
+            )
+        }
+        log.info(
+            "Swapped CR snapshot: remoteStatus='{}' (previous='{}'), components={}, ranges={}, failedCaches={}, tookMs={}",
+            remoteStatus, previous?.remoteStatus, next.allComponents.size, next.allJiraComponentVersionRanges.size,
+            failedCaches, (System.nanoTime() - startedAt) / 1_000_000
+        )
+        settings.snapshotFile?.let { file -> writeSnapshotFile(next, file) }
+        return UpdateCacheResult("Swapped CR snapshot remoteStatus='$remoteStatus', failedCaches=$failedCaches")
+    }
+
+    private fun readSnapshotFile(file: File): RegistrySnapshot? {
+        val startedAt = System.nanoTime()
+        return try {
+            RegistrySnapshotFile.read(file)?.let { modelInterner.snapshot(it) }?.also { persisted ->
+                log.info(
+                    "Read CR snapshot of remoteStatus='{}' from '{}': components={}, ranges={}, tookMs={}",
+                    persisted.remoteStatus, file, persisted.allComponents.size, persisted.allJiraComponentVersionRanges.size,
+                    (System.nanoTime() - startedAt) / 1_000_000
+                )
+            }
+        } catch (e: Exception) {
+            log.warn("Unable to read CR snapshot from '{}', starting without it", file, e)
+            null
+        }
+    }
+
+    private fun writeSnapshotFile(snapshot: RegistrySnapshot, file: File) {
+        try {
+            RegistrySnapshotFile.write(snapshot, file)
+        } catch (e: Exception) {
+            log.warn("Unable to save CR snapshot to '{}'", file, e)
+        }
+    }
+
     /**
      * Map of every [CacheId] to its in-process [Cache] reference.
      * We clear via these direct references (not via [CacheManager.getManagedCache])
@@ -363,7 +766,6 @@ class ComponentRegistryServiceImpl @Inject constructor(
             CacheId.JIRA_COMPONENT_VERSION_RANGES_BY_PROJECT_KEY to jiraComponentVersionRangesByProjectCache,
 
             CacheId.IS_VERSION_MINOR to isMinorVersionCache,
-            CacheId.MINOR_VERSION_BY_VERSION to minorVersionByVersionCache,
             CacheId.MINOR_VERSION_BY_VERSION_NAME_AND_PROJECT to minorVersionByVersionNameAndProjectCache,
 
             CacheId.JIRA_COMPONENT_BY_PROJECT_VERSION to jiraComponentByProjectAndVersion,
@@ -377,16 +779,52 @@ class ComponentRegistryServiceImpl @Inject constructor(
             CacheId.VCS_SETTINGS_BY_JIRA_PROJECT_VERSION to vcsSettingsByJiraProjectVersionCache,
             CacheId.VCS_SETTINGS_BY_COMPONENT_VERSION to vcsSettingsByComponentVersionCache,
 
-            CacheId.IS_COMPONENT_EXISTS_BY_PROJECT_VERSION to componentExistsByJiraProjectVersionCache,
-            CacheId.IS_COMPONENT_EXISTS_BY_PROJECT_KEY to componentExistsByJiraProjectCache,
-
             CacheId.DETAILED_COMPONENT_VERSION to detailedComponentVersionCache,
-            CacheId.DETAILED_COMPONENT_VERSIONS to detailedComponentVersionsCache,
 
             CacheId.DETAILED_COMPONENT to detailedComponentCache
         )
     }
 
+    /** Cache metrics MBeans registered by this instance, unregistered by [close]. */
+    private val metricsMBeanNames: List<ObjectName> = if (settings.registerMetricsMBeans) {
+        CacheMetricsJmx.register(cachesById.keys.associateWith { loaderTracker.metrics.forCache(it.id()) })
+    } else {
+        emptyList()
+    }
+
+    init {
+        snapshot?.let { persisted -> revalidatePersistedSnapshotAsync(persisted) }
+    }
+
+    /**
+     * Unregisters the cache metrics MBeans and stops the background threads of the service: a running snapshot
+     * refresh and pending background revalidations are abandoned, lookups still waiting for the registry fail.
+     */
+    override fun close() {
+        CacheMetricsJmx.unregister(metricsMBeanNames)
+        for (executor in listOf(lazySnapshotRefreshExecutor, lazyRemoteCallExecutor, lazyAsyncLookupExecutor)) {
+            if (executor.isInitialized()) {
+                executor.value.shutdownNow()
+            }
+        }
+    }
+
+    override fun getCacheMetrics(): Map<CacheId, CacheMetricsSnapshot> =
+        cachesById.keys.associateWith { loaderTracker.metrics.forCache(it.id()).snapshot() }
+
+    override fun getStaleCaches(): Set<CacheId> {
+        val staleCacheNames = staleWhileRevalidate?.staleCacheNames() ?: return emptySet()
+        return cachesById.keys.filterTo(LinkedHashSet()) { it.id() in staleCacheNames }
+    }
+
+    /**
+     * Whether the cache answers the key with a last known good value because its latest registry call failed, see
+     * [ComponentRegistryServiceSettings.staleWhileRevalidate]. The key is the one of the cache, e.g. the
+     * [JiraProjectVersion] of [CacheId.JIRA_COMPONENT_BY_PROJECT_VERSION]; lookups answered from the version ranges
+     * are stale when [CacheId.ALL_JIRA_COMPONENT_VERSION_RANGES] is stale for [Unit].
+     */
+    override fun isStale(cacheId: CacheId, key: Any): Boolean = staleWhileRevalidate?.isStale(cacheId.id(), key) ?: false
+
     /**
      * Clears every cache via its direct in-process [Cache] reference (the same instance
      * bound to the loader lambda), so we are guaranteed to be hitting the map that
@@ -399,6 +837,7 @@ class ComponentRegistryServiceImpl @Inject constructor(
         for ((cacheId, cache) in cachesById) {
             val name = cacheId.id()
             try {
+                loaderTracker.beginClean(name)
                 cache.removeAll()
                 loaderTracker.markCleaned(name)
             } catch (e: Exception) {
@@ -406,39 +845,97 @@ class ComponentRegistryServiceImpl @Inject constructor(
                 log.warn("removeAll() failed for cache '$name': ${e.message}", e)
             }
         }
+        versionKeys.clear()
+        modelInterner.clear()
+        // Keeps the instances of the published snapshot canonical for the values loaded from now on
+        snapshot?.let { modelInterner.snapshot(it) }
         return failed
     }
 
 
+    /**
+     * Requests detailed versions in chunks of [ComponentRegistryServiceSettings.detailedVersionsChunkSize], several
+     * chunks run concurrently on [remoteCallExecutor]. A failed chunk is reported in
+     * [DetailedComponentVersions.errors] for each of its versions; the request fails only if every chunk failed.
+     */
+    private fun fetchDetailedComponentVersions(component: String, versions: Collection<String>): DetailedComponentVersions {
+        val chunks = versions.chunked(settings.detailedVersionsChunkSize)
+        val chunkResults = if (chunks.size <= 1) {
+            chunks.map { chunk -> fetchDetailedComponentVersionsChunk(component, chunk) }
+        } else {
+            chunks.map { chunk ->
+                CompletableFuture.supplyAsync({ fetchDetailedComponentVersionsChunk(component, chunk) }, remoteCallExecutor)
+            }.map { it.join() }
+        }
+        val found = HashMap<String, DetailedComponentVersion>(versions.size * 4 / 3 + 1)
+        val errors = LinkedHashMap<String, String>()
+        chunkResults.forEachIndexed { index, result ->
+            when (result) {
+                is LoadResult.Success -> found.putAll(result.result)
+                is LoadResult.Failure -> chunks[index].forEach { version -> errors[version] = result.error }
+            }
+        }
+        if (errors.isNotEmpty()) {
+            if (found.isEmpty()) {
+                throw JiraApplicationException("Unable to load detailed versions of component '$component': ${errors.values.distinct()}")
+            }
+            log.warn("Unable to load {} of {} detailed version(s) of component '{}': {}", errors.size, versions.size, component, errors.values.distinct())
+        }
+        return DetailedComponentVersions(found, errors)
+    }
+
+    private fun fetchDetailedComponentVersionsChunk(component: String, versions: List<String>): LoadResult<Map<String, DetailedComponentVersion>> {
+        return try {
+            LoadResult.Success(client.getDetailedComponentVersions(component, VersionRequest(versions)).versions
+                .mapValues { entry -> entry.value.toModel() })
+        } catch (e: Exception) {
+            LoadResult.Failure(e.message ?: e.javaClass.name)
+        }
+    }
+
+    /**
+     * Maps "not found" answers of the registry to null, which is cached as a negative result. With
+     * [ComponentRegistryServiceSettings.staleWhileRevalidate] any other failure is treated as transient and thrown so
+     * it is never cached as a negative.
+     */
     private fun <T> clearResponse(function: () -> T): T? {
         return try {
             function.invoke()
+        } catch (e: NotFoundException) {
+            null
         } catch (e: FeignException) {
             throw JiraApplicationException(e.message, e)
         } catch (e: Exception) {
+            if (staleWhileRevalidate != null) {
+                throw JiraApplicationException(e.message, e)
+            }
             null
         }
     }
 
     private fun org.octopusden.octopus.components.registry.core.dto.DetailedComponent.toModel(): DetailedComponent {
-        return DetailedComponent(id, system, clientCode, name, componentOwner,buildSystem, vcsSettings.toModel(), jiraComponentVersion.toModel(), detailedComponentVersion.toModel())
+        val vcsSettingsModel = vcsSettings.toModel()
+        return DetailedComponent(id, system, clientCode, name, componentOwner,buildSystem, vcsSettingsModel,
+                jiraComponentVersion.toModel { isHotfixEnabled(vcsSettingsModel) }, detailedComponentVersion.toModel())
     }
 
     private fun org.octopusden.octopus.components.registry.core.dto.Component.toModel(): Component {
         return Component(id, system, clientCode, name, componentOwner, releaseManager, distribution?.toModel(), releasesInDefaultBranch, archived)
     }
 
-    private fun JiraComponentVersionDTO.toModel(): JiraComponentVersion {
+    private fun JiraComponentVersionDTO.toModel(hotfixEnabled: (ComponentVersion) -> Boolean): JiraComponentVersion {
         val componentVersion = ComponentVersion.create(name, version)
-        return JiraComponentVersion(componentVersion, component.toModel(isHotfixEnabled(componentVersion)), jiraComponentVersionFormatter)
+        return JiraComponentVersion(componentVersion, component.toModel(hotfixEnabled(componentVersion)), jiraComponentVersionFormatter)
     }
 
     private fun JiraComponentDTO.toModel(isHotfixEnabled: Boolean): JiraComponent {
-        return JiraComponent(projectKey, displayName, this.componentVersionFormat.toModel(), this.componentInfo.toModel(), technical, isHotfixEnabled)
+        return modelInterner.jiraComponent(
+            JiraComponent(projectKey, displayName, this.componentVersionFormat.toModel(), this.componentInfo.toModel(), technical, isHotfixEnabled)
+        )
     }
 
     private fun VersionControlSystemRootDTO.toModel(): VersionControlSystemRoot {
-        return VersionControlSystemRoot(name, RepositoryType.valueOf(type.name), vcsPath, tag, branch, hotfixBranch)
+        return modelInterner.vcsRoot(VersionControlSystemRoot(name, RepositoryType.valueOf(type.name), vcsPath, tag, branch, hotfixBranch))
     }
 
     private fun JiraComponentVersionRangeDTO.toModel(): JiraComponentVersionRange {
@@ -469,11 +966,11 @@ class ComponentRegistryServiceImpl @Inject constructor(
     }
 
     private fun DistributionDTO.toModel(): Distribution {
-        return Distribution(explicit, external, gav?:"")
+        return modelInterner.distribution(Distribution(explicit, external, gav?:""))
     }
 
     private fun VCSSettingsDTO.toModel(): VCSSettings {
-        return VCSSettings(externalRegistry, versionControlSystemRoots.map { it.toModel() })
+        return modelInterner.vcsSettings(VCSSettings(externalRegistry, versionControlSystemRoots.map { it.toModel() }))
     }
 
     private fun org.octopusden.octopus.components.registry.core.dto.DetailedComponentVersion.toModel(): DetailedComponentVersion {
@@ -485,10 +982,59 @@ class ComponentRegistryServiceImpl @Inject constructor(
         return ComponentRegistryVersion(version, jiraVersion)
     }
 
-    private fun isHotfixEnabled(componentVersion: ComponentVersion): Boolean {
-        return getVCSSettings(componentVersion)
-            .map { vcsSettings -> isHotfixEnabled(vcsSettings) }
-            .orElse(false)
+    /**
+     * Called from cache loaders converting registry responses, so resolved in memory only: from the ranges (see
+     * [hotfixEnabledByRanges]), otherwise from the VCS settings of the version when cached. Lookups load those
+     * settings before the conversion when the ranges are unavailable, see [prefetchHotfixSettings]; a flag found
+     * nowhere is false.
+     */
+    private fun isHotfixEnabled(componentVersion: ComponentVersion, cachedVcsSettings: () -> Optional<VCSSettings>?): Boolean {
+        hotfixEnabledByRanges(componentVersion)?.let { return it }
+        val vcsSettings = cachedVcsSettings()
+        if (vcsSettings == null) {
+            log.debug("Hotfix flag of {} is unknown without a registry call, assuming disabled", componentVersion)
+            return false
+        }
+        return vcsSettings.map { isHotfixEnabled(it) }.orElse(false)
+    }
+
+    /**
+     * Hotfix flag of the range containing the version or of all ranges of the component when they agree, null when
+     * the ranges are unavailable or don't tell.
+     */
+    private fun hotfixEnabledByRanges(componentVersion: ComponentVersion): Boolean? {
+        val index = versionRangeIndex?.takeIf { it.revision == loaderTracker.revisionOf(CacheId.ALL_JIRA_COMPONENT_VERSION_RANGES.id()) }
+            ?: return null
+        val range = index.findByComponent(componentVersion.componentName, componentVersion.version)
+        if (range != null) {
+            return isHotfixEnabled(range.vcsSettings)
+        }
+        return index.getRanges(componentVersion.componentName)
+            ?.map { isHotfixEnabled(it.vcsSettings) }
+            ?.distinct()
+            ?.singleOrNull()
+    }
+
+    /**
+     * Loads the VCS settings the hotfix flag is taken from before a lookup the ranges can't answer, outside the cache
+     * loader converting the response. A failure only leaves the flag unknown, the lookup itself goes on.
+     */
+    private fun prefetchHotfixSettings(key: Any, load: () -> Unit) {
+        try {
+            load()
+        } catch (e: Exception) {
+            log.debug("Unable to load VCS settings of {} for the hotfix flag: {}", key, e.message)
+        }
+    }
+
+    /**
+     * Settings of a range may contain placeholders (e.g. `$version` in a tag) which the registry resolves per version.
+     */
+    private fun isVersionDependent(vcsSettings: VCSSettings): Boolean {
+        return vcsSettings.versionControlSystemRoots.any { vcsRoot ->
+            vcsRoot.vcsPath.contains('$') || vcsRoot.tag.orEmpty().contains('$') ||
+                vcsRoot.branch.contains('$') || vcsRoot.hotfixBranch.orEmpty().contains('$')
+        }
     }
 
     private fun isHotfixEnabled(vcsSettings: VCSSettings): Boolean {
@@ -497,7 +1043,24 @@ class ComponentRegistryServiceImpl @Inject constructor(
         }
     }
 
+    /**
+     * State replaced as a whole on a snapshot swap.
+     *
+     * @param snapshot see [ComponentRegistryServiceImpl.snapshot]
+     * @param formatterVersionNames version names [formatter] is created with
+     */
+    private class PublishedState(val snapshot: RegistrySnapshot?, val formatterVersionNames: VersionNames) {
+        val formatter = JiraComponentVersionFormatter(formatterVersionNames)
+    }
+
     companion object {
         private val log = LoggerFactory.getLogger(ComponentRegistryServiceImpl::class.java)
+
+        private fun daemonThreadFactory(name: String): ThreadFactory {
+            val counter = AtomicInteger()
+            return ThreadFactory { runnable ->
+                Thread(runnable, "$name-${counter.incrementAndGet()}").apply { isDaemon = true }
+            }
+        }
     }
 }
@@ -0,0 +1,69 @@
+package org.octopusden.octopus.jira.config
+
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+/**
+ * Tuning of [ComponentRegistryServiceImpl].
+ *
+ * @param refreshMode how [ComponentRegistryService.checkCacheActualityAndClean] reacts to a remote revision change
+ * @param resolveVersionRangesLocally answer project/version lookups from the downloaded version ranges
+ * (see [VersionRangeIndex]) before asking the registry
+ * @param versionRangeIndexRetryAfterMillis delay before the version ranges are loaded again for [VersionRangeIndex]
+ * after a failed load, lookups go to the registry per key meanwhile
+ * @param detailedVersionsChunkSize max number of versions requested in one detailed component versions call
+ * @param remoteCallParallelism max number of registry calls running concurrently on behalf of one service
+ * (e.g. chunks of a detailed component versions request)
+ * @param asyncLookupParallelism max number of [AsyncComponentRegistryService] lookups waiting for the registry
+ * concurrently
+ * @param registerMetricsMBeans expose the metrics of every cache as an MBean, see [CacheMetricsMXBean]
+ * @param staleWhileRevalidate refresh cache entries older than [softTtlMillis] in the background and answer failed
+ * registry calls with the last known good value, see [StaleWhileRevalidate]
+ * @param softTtlMillis age after which a cache entry is refreshed in the background
+ * @param staleRetryAfterMillis delay before a stale entry (its latest load failed) is refreshed again
+ * @param staleMaxAgeMillis time after the last successful load a stale value is served for at most
+ * @param staleMaxEntries max number of last known good values remembered per cache, should exceed the number of keys
+ * a cache holds between two remote revision changes
+ * @param snapshotFile file the registry snapshot is saved to after every refresh (see [RegistrySnapshotFile]); the
+ * service starts from it without waiting for the registry and revalidates it in the background. Requires
+ * [RefreshMode.SNAPSHOT]
+ */
+data class ComponentRegistryServiceSettings(
+    val refreshMode: RefreshMode = RefreshMode.CLEAR,
+    val resolveVersionRangesLocally: Boolean = true,
+    val versionRangeIndexRetryAfterMillis: Long = TimeUnit.SECONDS.toMillis(30),
+    val detailedVersionsChunkSize: Int = 50,
+    val remoteCallParallelism: Int = 4,
+    val asyncLookupParallelism: Int = 8,
+    val registerMetricsMBeans: Boolean = true,
+    val staleWhileRevalidate: Boolean = false,
+    val softTtlMillis: Long = TimeUnit.MINUTES.toMillis(10),
+    val staleRetryAfterMillis: Long = TimeUnit.SECONDS.toMillis(30),
+    val staleMaxAgeMillis: Long = TimeUnit.HOURS.toMillis(4),
+    val staleMaxEntries: Int = 10_000,
+    val snapshotFile: File? = null
+) {
+    init {
+        require(versionRangeIndexRetryAfterMillis > 0) { "versionRangeIndexRetryAfterMillis should be positive" }
+        require(detailedVersionsChunkSize > 0) { "detailedVersionsChunkSize should be positive" }
+        require(remoteCallParallelism > 0) { "remoteCallParallelism should be positive" }
+        require(asyncLookupParallelism > 0) { "asyncLookupParallelism should be positive" }
+        require(softTtlMillis > 0) { "softTtlMillis should be positive" }
+        require(staleRetryAfterMillis > 0) { "staleRetryAfterMillis should be positive" }
+        require(staleMaxAgeMillis >= softTtlMillis) { "staleMaxAgeMillis should not be less than softTtlMillis" }
+        require(staleMaxEntries > 0) { "staleMaxEntries should be positive" }
+        require(snapshotFile == null || refreshMode == RefreshMode.SNAPSHOT) { "snapshotFile requires refreshMode SNAPSHOT" }
+    }
+
+    enum class RefreshMode {
+        /** Remove all entries of every cache, they are loaded again on demand. */
+        CLEAR,
+
+        /**
+         * Build the next snapshot of all components, all version ranges and the per-project maps in the background
+         * and swap it in atomically once complete; readers keep using the previous snapshot until then. The per-key
+         * caches are cleared after the swap.
+         */
+        SNAPSHOT
+    }
+}
@@ -0,0 +1,30 @@
+package org.octopusden.octopus.jira.config
+
+import com.atlassian.jira.project.version.Version
+import java.util.concurrent.ConcurrentHashMap
+import org.octopusden.octopus.jira.model.JiraProjectVersion
+
+/**
+ * Builds cache keys of Jira versions as project key plus version name instead of the Jira [Version] and
+ * [com.atlassian.jira.project.Project] entities: such keys are cheap to hash and compare, two instances of the same
+ * version hit the same entry, and a cache entry does not pin the entity graph. Project keys and version names are
+ * interned, so the keys of one project share their strings and repeated version names are stored once.
+ */
+class JiraProjectVersionKeys {
+
+    private val strings = ConcurrentHashMap<String, String>()
+
+    fun of(version: Version): JiraProjectVersion = of(version.project.key, version.name)
+
+    fun of(projectKey: String, versionName: String): JiraProjectVersion =
+        JiraProjectVersion(intern(projectKey), intern(versionName))
+
+    fun intern(value: String): String = strings.putIfAbsent(value, value) ?: value
+
+    /** Number of distinct strings held. */
+    val size: Int
+        get() = strings.size
+
+    /** Forgets the interned strings, keys built before stay valid. */
+    fun clear() = strings.clear()
+}
@@ -2,76 +2,218 @@ package org.octopusden.octopus.jira.config
 
 import com.atlassian.cache.Cache
 import com.atlassian.cache.CacheManager
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
 import org.slf4j.LoggerFactory
 
 /**
- * Detects a race between cache-loader calls and `clear()`:
+ * Fences cache-loader calls against `clear()`. Without it:
  *  - a loader call starts BEFORE its cache's `clear()` runs,
  *  - the loader's remote call finishes AFTER that `clear()`,
  *  - so the loader silently re-inserts a value that was fetched against the
  *    pre-clean state of the remote service, overwriting the just-cleared entry
  *    with stale data. The cache then serves that stale value until the next clear.
  *
- * Clean timestamps are tracked **per cache**: a loader for cache A is only
- * flagged when cache A itself was cleared during the loader's window. This
- * avoids cross-cache false positives when multiple caches are cleared one by one.
+ * Every cache has a **generation** counter, bumped right before and right after
+ * its `clear()`. A load remembers the generation it started in; when the generation
+ * changed by the time the loader returns, the value is discarded and the loader is
+ * re-executed transparently (up to [maxLoadAttempts] times in total), so the value
+ * handed to the cache was fetched entirely after the clean. Generations are tracked
+ * **per cache**: a loader for cache A is only re-executed when cache A itself was
+ * cleared during the loader's window.
  *
  * Usage:
  *  1. Hold a single [LoaderTracker] instance per service.
  *  2. Wrap every loader lambda with [wrap] (or use [CacheManager.trackedCache]).
- *  3. Immediately after each `cache.removeAll()` call, invoke [markCleaned] with
- *     the same cache name passed to [wrap]. Do this per cache, right after the
- *     clear succeeds — not once at the end of a multi-cache sweep — so loaders
- *     that finish mid-sweep are evaluated against an accurate timestamp.
- *  4. When the race occurs, a `POSSIBLE STALE REINSERT` WARN is emitted naming
- *     the cache and the exact key that is now stale.
+ *  3. Invoke [beginClean] right before and [markCleaned] right after each
+ *     `cache.removeAll()` call, with the same cache name passed to [wrap]. Do this
+ *     per cache — not once around a multi-cache sweep — so loaders that finish
+ *     mid-sweep are evaluated against an accurate generation.
+ *  4. When a loader keeps racing with cleans until its attempts are exhausted, the
+ *     last value is returned and a `POSSIBLE STALE REINSERT` WARN is emitted naming
+ *     the cache and the exact key that may be stale. Re-executions are counted per
+ *     cache, see [staleReloadCount].
  *
- * Overhead: ~100–200 ns per cache miss (two `System.nanoTime()`, one atomic inc/dec,
- * one map read). Zero overhead on cache hits. Constant memory (one map entry per cache).
+ * The fence covers the loader call itself: a `clear()` landing between the loader
+ * returning and the cache storing its value is not detected.
+ *
+ * Single-flight: concurrent misses of the same cache and key are coalesced. The first
+ * caller runs the loader, the others wait for its result (or its exception) instead of
+ * issuing their own remote call. Coalesced calls are counted per cache, see
+ * [coalescedCount]. A loader that, directly or through other caches, loads its own cache
+ * and key again on the same thread would wait for itself forever; such a call fails
+ * with [IllegalStateException] instead.
+ *
+ * Metrics: misses, loads, load latency, in-flight loads and clean durations are recorded
+ * per cache in [metrics]; the cache returned by [CacheManager.trackedCache] adds the request
+ * count, so hits are requests minus misses.
+ *
+ * Overhead: ~100–250 ns per cache miss (four `System.nanoTime()`, a few atomic/striped
+ * increments, two volatile generation reads, two map operations for the in-flight
+ * registration). The per-cache generation counter and metrics are resolved once in [wrap],
+ * not per call. One striped increment on cache hits. Memory: one entry per cache plus one
+ * per load in flight.
  */
-class LoaderTracker {
+class LoaderTracker(val maxLoadAttempts: Int = DEFAULT_MAX_LOAD_ATTEMPTS) {
+
+    init {
+        require(maxLoadAttempts >= 1) { "maxLoadAttempts should be positive" }
+    }
 
     val inFlight: AtomicInteger = AtomicInteger(0)
 
     private val lastCleanAtNanosByCache: ConcurrentHashMap<String, Long> = ConcurrentHashMap()
 
+    private val inFlightLoads: ConcurrentHashMap<InFlightKey, Flight> = ConcurrentHashMap()
+
+    private val generationByCache: ConcurrentHashMap<String, AtomicLong> = ConcurrentHashMap()
+
+    private val replacementsByCache: ConcurrentHashMap<String, AtomicLong> = ConcurrentHashMap()
+
+    /** Per cache counters of loads, coalesced and re-executed calls and clean durations. */
+    val metrics: CacheMetricsRegistry = CacheMetricsRegistry()
+
+    /** Opens a new generation of the cache, loads already running will not be trusted. */
+    fun beginClean(cacheName: String) {
+        metrics.forCache(cacheName).clearStarted()
+        generation(cacheName).incrementAndGet()
+    }
+
     fun markCleaned(cacheName: String) {
+        generation(cacheName).incrementAndGet()
         lastCleanAtNanosByCache[cacheName] = System.nanoTime()
+        metrics.forCache(cacheName).clearFinished()
     }
 
     fun lastCleanAtNanos(cacheName: String): Long = lastCleanAtNanosByCache[cacheName] ?: 0L
 
-    /** Wraps a cache-loader lambda with start/finish bookkeeping and race detection. */
-    fun <K, V> wrap(cacheName: String, fn: (K) -> V): (K) -> V = { key ->
+    fun generationOf(cacheName: String): Long = generationByCache[cacheName]?.get() ?: 0L
+
+    /** Records that a value of the cache was replaced in place, without a clean (e.g. a background refresh). */
+    fun markReplaced(cacheName: String) {
+        replacementsByCache.computeIfAbsent(cacheName) { AtomicLong() }.incrementAndGet()
+    }
+
+    /**
+     * Changes whenever the cache is cleaned or one of its values is replaced in place, for state derived from the
+     * cache contents. Read it before reading the cache: derived state is current while the revision is unchanged.
+     */
+    fun revisionOf(cacheName: String): Long = generationOf(cacheName) + (replacementsByCache[cacheName]?.get() ?: 0L)
+
+    /** Number of loader calls of the cache that were re-executed because the cache was cleared meanwhile. */
+    fun staleReloadCount(cacheName: String): Long = metrics.find(cacheName)?.staleReloadCount ?: 0L
+
+    /** Number of loader calls of the cache that were served by another caller's in-flight load. */
+    fun coalescedCount(cacheName: String): Long = metrics.find(cacheName)?.coalescedCount ?: 0L
+
+    /** Number of coalesced loader calls of every cache that had at least one. */
+    fun coalescedCounts(): Map<String, Long> = metrics.all()
+        .filter { it.coalescedCount > 0 }
+        .associate { it.cacheName to it.coalescedCount }
+
+    /**
+     * Wraps a cache-loader lambda with single-flight coalescing, start/finish bookkeeping and race detection.
+     *
+     * @param recordMiss count every call as a cache miss, false for loads not triggered by a `get()` (refreshes)
+     */
+    fun <K, V> wrap(cacheName: String, recordMiss: Boolean = true, fn: (K) -> V): (K) -> V {
+        val generation = generation(cacheName)
+        val cacheMetrics = metrics.forCache(cacheName)
+        return { key ->
+            if (recordMiss) {
+                cacheMetrics.recordMiss()
+            }
+            singleFlight(cacheName, cacheMetrics, key) { track(cacheName, generation, cacheMetrics, key, fn) }
+        }
+    }
+
+    private fun generation(cacheName: String): AtomicLong = generationByCache.computeIfAbsent(cacheName) { AtomicLong() }
+
+    @Suppress("UNCHECKED_CAST")
+    private fun <K, V> singleFlight(cacheName: String, cacheMetrics: CacheMetrics, key: K, load: () -> V): V {
+        val flightKey = InFlightKey(cacheName, key)
+        val flight = Flight(Thread.currentThread())
+        val leader = inFlightLoads.putIfAbsent(flightKey, flight)
+        if (leader != null) {
+            // The leader is this very thread further up the stack, joining its future would never return
+            check(leader.thread !== flight.thread) { "Recursive load of key='$key' in cache '$cacheName'" }
+            cacheMetrics.recordCoalesced()
+            return try {
+                leader.result.join() as V
+            } catch (e: CompletionException) {
+                throw e.cause ?: e
+            }
+        }
+        try {
+            val value = load()
+            flight.result.complete(value)
+            return value
+        } catch (e: Throwable) {
+            flight.result.completeExceptionally(e)
+            throw e
+        } finally {
+            inFlightLoads.remove(flightKey, flight)
+        }
+    }
+
+    private fun <K, V> track(cacheName: String, generation: AtomicLong, cacheMetrics: CacheMetrics, key: K, fn: (K) -> V): V {
         val startedAt = System.nanoTime()
         inFlight.incrementAndGet()
+        cacheMetrics.loadStarted()
         try {
-            val value = fn(key)
-            val finishedAt = System.nanoTime()
-            val cleanAt = lastCleanAtNanos(cacheName)
-            // If current cache was cleared strictly between our start and our finish,
-            // our about-to-be-cached value may be stale and would overwrite the clean.
-            if (cleanAt in (startedAt + 1)..finishedAt) {
-                log.warn(
-                    "POSSIBLE STALE REINSERT in cache '{}': loader for key='{}' started {}ms before clear() ran, " +
-                        "finishing now will overwrite the cleared entry with data fetched from the pre-clean state of the remote service. " +
-                        "elapsedMs={}, inFlightNow={}",
-                    cacheName,
-                    key,
-                    (cleanAt - startedAt) / 1_000_000,
-                    (finishedAt - startedAt) / 1_000_000,
-                    inFlight.get()
-                )
+            var attempt = 1
+            while (true) {
+                val startGeneration = generation.get()
+                val loadStartedAt = System.nanoTime()
+                val value = try {
+                    fn(key)
+                } catch (e: Throwable) {
+                    cacheMetrics.recordLoad(System.nanoTime() - loadStartedAt, false)
+                    throw e
+                }
+                cacheMetrics.recordLoad(System.nanoTime() - loadStartedAt, true)
+                // Same generation: no clear() ran during the load, the value is current.
+                if (generation.get() == startGeneration) {
+                    return value
+                }
+                if (attempt >= maxLoadAttempts) {
+                    val finishedAt = System.nanoTime()
+                    log.warn(
+                        "POSSIBLE STALE REINSERT in cache '{}': loader for key='{}' raced with clear() in all {} attempt(s), " +
+                            "the last value may have been fetched from the pre-clean state of the remote service. " +
+                            "lastCleanMsAgo={}, elapsedMs={}, inFlightNow={}",
+                        cacheName,
+                        key,
+                        attempt,
+                        (finishedAt - lastCleanAtNanos(cacheName)) / 1_000_000,
+                        (finishedAt - startedAt) / 1_000_000,
+                        inFlight.get()
+                    )
+                    return value
+                }
+                cacheMetrics.recordStaleReload()
+                log.debug("Cache '{}' was cleared while loading key='{}', reloading (attempt {})", cacheName, key, attempt + 1)
+                attempt++
             }
-            value
         } finally {
+            cacheMetrics.loadFinished()
             inFlight.decrementAndGet()
         }
     }
 
+    private data class InFlightKey(val cacheName: String, val key: Any?)
+
+    /** A load in flight and the thread running it. */
+    private class Flight(val thread: Thread) {
+        val result: CompletableFuture<Any?> = CompletableFuture()
+    }
+
     companion object {
+        const val DEFAULT_MAX_LOAD_ATTEMPTS = 3
+
         private val log = LoggerFactory.getLogger(LoaderTracker::class.java)
     }
 }
@@ -80,10 +222,88 @@ class LoaderTracker {
  * Convenience: register a tracked cache in a single call. Replaces the verbose
  * `cacheManager.getCache(id.id(), tracker.wrap<K, V>(id.id()) { ... })` pattern with
  * `cacheManager.trackedCache(id, tracker) { key: K -> V }`.
+ *
+ * With a [revalidation] policy the cache serves expired and, on remote failures, last known good values,
+ * see [StaleWhileRevalidate].
  */
 inline fun <reified K : Any, reified V : Any> CacheManager.trackedCache(
     cacheId: CacheId,
     tracker: LoaderTracker,
+    revalidation: StaleWhileRevalidate? = null,
+    noinline loader: (K) -> V
+): Cache<K, V> {
+    val name = cacheId.id()
+    if (revalidation == null) {
+        return MeteredCache(getCache(name, tracker.wrap(name, true, loader)), tracker.metrics.forCache(name))
+    }
+    val entries = revalidation.entries(name, tracker.metrics.forCache(name), loader)
+    return RevalidatingCache(getCache(name, tracker.wrap(name, true, entries::load)), name, tracker, entries, revalidation.executor)
+}
+
+/**
+ * Like [trackedCache], but the underlying cache has no loader: [OnDemandCache.get] returns null on a miss and
+ * [OnDemandCache.getOrLoad] runs the tracked loader. For lookups handling misses themselves, e.g. in batches.
+ *
+ * With a [revalidation] policy failed loads are answered with last known good values, see [StaleWhileRevalidate];
+ * entries are not refreshed in the background.
+ */
+inline fun <reified K : Any, reified V : Any> CacheManager.trackedOnDemandCache(
+    cacheId: CacheId,
+    tracker: LoaderTracker,
+    revalidation: StaleWhileRevalidate? = null,
     noinline loader: (K) -> V
-): Cache<K, V> = getCache(cacheId.id(), tracker.wrap(cacheId.id(), loader))
+): OnDemandCache<K, V> {
+    val name = cacheId.id()
+    val metrics = tracker.metrics.forCache(name)
+    val load = if (revalidation == null) loader else revalidation.entries(name, metrics, loader)::load
+    return OnDemandCache(getCache(name), name, tracker, tracker.wrap(name, true, load))
+}
 
+/** Counts [get] requests of the cache and reports its entry count, everything else goes to [delegate]. */
+open class MeteredCache<K : Any, V : Any>(protected val delegate: Cache<K, V>, protected val metrics: CacheMetrics) : Cache<K, V> by delegate {
+
+    init {
+        metrics.entryCounter = { delegate.keys.size }
+    }
+
+    override fun get(key: K): V? {
+        metrics.recordRequest()
+        return delegate.get(key)
+    }
+}
+
+
+/**
+ * [MeteredCache] over a cache without loader. [get] reads the cached value only, a null answer is a miss the caller
+ * handles; [getOrLoad] loads a missing value and stores it unless the cache was cleared meanwhile.
+ */
+class OnDemandCache<K : Any, V : Any>(
+    delegate: Cache<K, V>,
+    private val cacheName: String,
+    private val tracker: LoaderTracker,
+    private val trackedLoader: (K) -> V
+) : MeteredCache<K, V>(delegate, tracker.metrics.forCache(cacheName)) {
+
+    override fun get(key: K): V? {
+        metrics.recordRequest()
+        val value = delegate.get(key)
+        if (value == null) {
+            metrics.recordMiss()
+        }
+        return value
+    }
+
+    /** Reads the cached value without counting a request, for lookups made on behalf of another cache's loader. */
+    fun peek(key: K): V? = delegate.get(key)
+
+    fun getOrLoad(key: K): V {
+        metrics.recordRequest()
+        delegate.get(key)?.let { return it }
+        val generation = tracker.generationOf(cacheName)
+        val value = trackedLoader(key)
+        if (tracker.generationOf(cacheName) != generation) {
+            return value
+        }
+        return delegate.putIfAbsent(key, value) ?: value
+    }
+}
@@ -0,0 +1,109 @@
+package org.octopusden.octopus.jira.config
+
+import java.util.concurrent.ConcurrentHashMap
+import org.octopusden.octopus.jira.model.Component
+import org.octopusden.octopus.jira.model.Distribution
+import org.octopusden.octopus.jira.model.JiraComponentVersionRange
+import org.octopusden.octopus.jira.model.VCSSettings
+import org.octopusden.octopus.jira.model.VersionControlSystemRoot
+import org.octopusden.octopus.releng.dto.JiraComponent
+
+/**
+ * Flyweight pools of the immutable registry model values. Every registry answer is converted to new instances, while
+ * across thousands of version ranges and the per-key caches most distributions, VCS settings and Jira components are
+ * equal; passing them through here makes equal values share the first instance seen.
+ *
+ * [JiraComponent] comes from releng-lib and is pooled by its fields rather than by its own equality.
+ */
+class RegistryModelInterner {
+
+    private val distributions = ConcurrentHashMap<Distribution, Distribution>()
+    private val vcsRoots = ConcurrentHashMap<VersionControlSystemRoot, VersionControlSystemRoot>()
+    private val vcsSettings = ConcurrentHashMap<VCSSettings, VCSSettings>()
+    private val jiraComponents = ConcurrentHashMap<JiraComponentKey, JiraComponent>()
+
+    fun distribution(distribution: Distribution): Distribution = distributions.intern(distribution)
+
+    fun vcsRoot(vcsRoot: VersionControlSystemRoot): VersionControlSystemRoot = vcsRoots.intern(vcsRoot)
+
+    fun vcsSettings(settings: VCSSettings): VCSSettings =
+        vcsSettings[settings] ?: vcsSettings.intern(settings.copy(versionControlSystemRoots = settings.versionControlSystemRoots.map { vcsRoot(it) }))
+
+    fun jiraComponent(jiraComponent: JiraComponent): JiraComponent {
+        val key = JiraComponentKey.of(jiraComponent)
+        return jiraComponents.putIfAbsent(key, jiraComponent) ?: jiraComponent
+    }
+
+    fun component(component: Component): Component {
+        val distribution = component.distribution?.let { distribution(it) }
+        return if (distribution === component.distribution) component else component.copy(distribution = distribution)
+    }
+
+    fun range(range: JiraComponentVersionRange): JiraComponentVersionRange {
+        val jiraComponent = jiraComponent(range.jiraComponent)
+        val distribution = distribution(range.distribution)
+        val vcsSettings = vcsSettings(range.vcsSettings)
+        return if (jiraComponent === range.jiraComponent && distribution === range.distribution && vcsSettings === range.vcsSettings) {
+            range
+        } else {
+            range.copy(jiraComponent = jiraComponent, distribution = distribution, vcsSettings = vcsSettings)
+        }
+    }
+
+    internal fun snapshot(snapshot: RegistrySnapshot): RegistrySnapshot = RegistrySnapshot(
+        snapshot.remoteStatus,
+        snapshot.versionNames,
+        snapshot.allComponents.map { component(it) },
+        snapshot.allJiraComponentVersionRanges.mapTo(LinkedHashSet()) { range(it) }
+    )
+
+    /** Number of distinct values held. */
+    val size: Int
+        get() = distributions.size + vcsRoots.size + vcsSettings.size + jiraComponents.size
+
+    /** Forgets the pooled values, instances handed out before stay valid. */
+    fun clear() {
+        distributions.clear()
+        vcsRoots.clear()
+        vcsSettings.clear()
+        jiraComponents.clear()
+    }
+
+    private fun <T : Any> ConcurrentHashMap<T, T>.intern(value: T): T = putIfAbsent(value, value) ?: value
+
+    private data class JiraComponentKey(
+        val projectKey: String?,
+        val displayName: String?,
+        val majorVersionFormat: String?,
+        val releaseVersionFormat: String?,
+        val buildVersionFormat: String?,
+        val lineVersionFormat: String?,
+        val hotfixVersionFormat: String?,
+        val hasComponentInfo: Boolean,
+        val versionPrefix: String?,
+        val versionFormat: String?,
+        val technical: Boolean,
+        val hotfixEnabled: Boolean
+    ) {
+        companion object {
+            fun of(jiraComponent: JiraComponent): JiraComponentKey {
+                val format = jiraComponent.componentVersionFormat
+                val componentInfo = jiraComponent.componentInfo
+                return JiraComponentKey(
+                    jiraComponent.projectKey,
+                    jiraComponent.displayName,
+                    format?.majorVersionFormat,
+                    format?.releaseVersionFormat,
+                    format?.buildVersionFormat,
+                    format?.lineVersionFormat,
+                    format?.hotfixVersionFormat,
+                    componentInfo != null,
+                    componentInfo?.versionPrefix,
+                    componentInfo?.versionFormat,
+                    jiraComponent.isTechnical,
+                    jiraComponent.isHotfixEnabled
+                )
+            }
+        }
+    }
+}
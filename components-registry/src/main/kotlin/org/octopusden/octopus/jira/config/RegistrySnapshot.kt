@@ -0,0 +1,22 @@
+package org.octopusden.octopus.jira.config
+
+import org.octopusden.octopus.jira.model.Component
+import org.octopusden.octopus.jira.model.JiraComponentVersionRange
+import org.octopusden.releng.versions.VersionNames
+
+/**
+ * Immutable generation of the hot registry datasets, built completely before it is published.
+ *
+ * @param remoteStatus remote revision the snapshot was built for, its string form when read from
+ * [RegistrySnapshotFile]
+ */
+internal class RegistrySnapshot(
+    val remoteStatus: Any?,
+    val versionNames: VersionNames,
+    val allComponents: List<Component>,
+    val allJiraComponentVersionRanges: Set<JiraComponentVersionRange>
+) {
+    val jiraComponentVersionRangesByProject: Map<String, Set<JiraComponentVersionRange>> =
+        allJiraComponentVersionRanges.groupBy { it.jiraComponent.projectKey }
+            .mapValues { (_, ranges) -> ranges.toSet() }
+}
@@ -0,0 +1,264 @@
+package org.octopusden.octopus.jira.config
+
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+import java.util.zip.CRC32
+import org.octopusden.octopus.jira.model.Component
+import org.octopusden.octopus.jira.model.Distribution
+import org.octopusden.octopus.jira.model.JiraComponentVersionRange
+import org.octopusden.octopus.jira.model.RepositoryType
+import org.octopusden.octopus.jira.model.VCSSettings
+import org.octopusden.octopus.jira.model.VersionControlSystemRoot
+import org.octopusden.octopus.releng.dto.ComponentInfo
+import org.octopusden.octopus.releng.dto.JiraComponent
+import org.octopusden.releng.versions.ComponentVersionFormat
+import org.octopusden.releng.versions.VersionNames
+
+/**
+ * Binary on-disk form of a [RegistrySnapshot], read through a memory mapping.
+ *
+ * Layout (big endian): `magic:int, formatVersion:int, crc32(payload):long, payload`. The payload starts with a
+ * table of the distinct strings (`count:int`, then `length:int, utf8 bytes` each); every string of the records
+ * below is an index into that table, -1 for null. Then come the remote status, the version names, the components and
+ * the version ranges. The per-project maps of [RegistrySnapshot] are derived from the ranges when reading.
+ *
+ * A file is written to a temporary sibling and moved in place, so a reader never sees a partial file. A file with
+ * another magic, format version or checksum is ignored.
+ */
+internal object RegistrySnapshotFile {
+
+    private const val MAGIC = 0x43525331 // "CRS1"
+    private const val FORMAT_VERSION = 2
+
+    fun write(snapshot: RegistrySnapshot, file: File) {
+        val payload = Writer().apply { writeSnapshot(snapshot) }.toByteArray()
+        val crc = CRC32().apply { update(payload) }.value
+        val directory = file.absoluteFile.parentFile
+        Files.createDirectories(directory.toPath())
+        val temporary = File.createTempFile(file.name, ".tmp", directory)
+        try {
+            DataOutputStream(temporary.outputStream().buffered()).use { output ->
+                output.writeInt(MAGIC)
+                output.writeInt(FORMAT_VERSION)
+                output.writeLong(crc)
+                output.write(payload)
+            }
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+        } finally {
+            temporary.delete()
+        }
+    }
+
+    /**
+     * @return snapshot stored in the file or null if there is none or it was written by another format version
+     * @throws IllegalStateException if the file is corrupted
+     */
+    fun read(file: File): RegistrySnapshot? {
+        if (!file.isFile) {
+            return null
+        }
+        FileChannel.open(file.toPath(), StandardOpenOption.READ).use { channel ->
+            val buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+            if (buffer.remaining() < 16 || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                return null
+            }
+            val crc = buffer.getLong()
+            val payload = buffer.slice()
+            val actualCrc = CRC32().apply { update(payload.duplicate()) }.value
+            check(crc == actualCrc) { "Checksum mismatch of registry snapshot file '$file'" }
+            return Reader(payload).readSnapshot()
+        }
+    }
+
+    private class Writer {
+        private val strings = LinkedHashMap<String, Int>()
+        private val body = ByteArrayOutputStream()
+        private val output = DataOutputStream(body)
+
+        fun writeSnapshot(snapshot: RegistrySnapshot) {
+            string(snapshot.remoteStatus?.toString())
+            val versionNames = snapshot.versionNames
+            string(versionNames.serviceBranch)
+            string(versionNames.service)
+            string(versionNames.minor)
+            output.writeInt(snapshot.allComponents.size)
+            snapshot.allComponents.forEach { component(it) }
+            output.writeInt(snapshot.allJiraComponentVersionRanges.size)
+            snapshot.allJiraComponentVersionRanges.forEach { range(it) }
+        }
+
+        fun toByteArray(): ByteArray {
+            output.flush()
+            val table = ByteArrayOutputStream()
+            DataOutputStream(table).use { tableOutput ->
+                tableOutput.writeInt(strings.size)
+                for (value in strings.keys) {
+                    val bytes = value.toByteArray(StandardCharsets.UTF_8)
+                    tableOutput.writeInt(bytes.size)
+                    tableOutput.write(bytes)
+                }
+            }
+            return table.toByteArray() + body.toByteArray()
+        }
+
+        private fun component(component: Component) {
+            string(component.id)
+            output.writeInt(component.system.size)
+            component.system.forEach { string(it) }
+            string(component.clientCode)
+            string(component.name)
+            string(component.componentOwner)
+            string(component.releaseManager)
+            nullableDistribution(component.distribution)
+            output.writeByte(
+                when (component.releasesInDefaultBranch) {
+                    null -> -1
+                    true -> 1
+                    false -> 0
+                }
+            )
+            output.writeBoolean(component.archived)
+        }
+
+        private fun range(range: JiraComponentVersionRange) {
+            string(range.componentName)
+            string(range.versionRange)
+            jiraComponent(range.jiraComponent)
+            nullableDistribution(range.distribution)
+            vcsSettings(range.vcsSettings)
+        }
+
+        private fun jiraComponent(jiraComponent: JiraComponent) {
+            string(jiraComponent.projectKey)
+            string(jiraComponent.displayName)
+            val format = jiraComponent.componentVersionFormat
+            output.writeBoolean(format != null)
+            if (format != null) {
+                string(format.majorVersionFormat)
+                string(format.releaseVersionFormat)
+                string(format.buildVersionFormat)
+                string(format.lineVersionFormat)
+                string(format.hotfixVersionFormat)
+            }
+            val componentInfo = jiraComponent.componentInfo
+            output.writeBoolean(componentInfo != null)
+            if (componentInfo != null) {
+                string(componentInfo.versionPrefix)
+                string(componentInfo.versionFormat)
+            }
+            output.writeBoolean(jiraComponent.isTechnical)
+            output.writeBoolean(jiraComponent.isHotfixEnabled)
+        }
+
+        private fun nullableDistribution(distribution: Distribution?) {
+            output.writeBoolean(distribution != null)
+            if (distribution != null) {
+                output.writeBoolean(distribution.explicit)
+                output.writeBoolean(distribution.external)
+                string(distribution.GAV)
+            }
+        }
+
+        private fun vcsSettings(vcsSettings: VCSSettings) {
+            string(vcsSettings.externalRegistry)
+            output.writeInt(vcsSettings.versionControlSystemRoots.size)
+            for (root in vcsSettings.versionControlSystemRoots) {
+                string(root.name)
+                string(root.repositoryType.name)
+                string(root.vcsPath)
+                string(root.tag)
+                string(root.branch)
+                string(root.hotfixBranch)
+            }
+        }
+
+        private fun string(value: String?) {
+            output.writeInt(if (value == null) -1 else strings.getOrPut(value) { strings.size })
+        }
+    }
+
+    private class Reader(private val buffer: ByteBuffer) {
+        private val strings: Array<String> = Array(buffer.getInt()) {
+            val bytes = ByteArray(buffer.getInt())
+            buffer.get(bytes)
+            String(bytes, StandardCharsets.UTF_8)
+        }
+
+        fun readSnapshot(): RegistrySnapshot {
+            val remoteStatus = string()
+            val versionNames = VersionNames(requiredString(), requiredString(), requiredString())
+            val components = List(buffer.getInt()) { component() }
+            val ranges = LinkedHashSet<JiraComponentVersionRange>()
+            repeat(buffer.getInt()) { ranges += range() }
+            return RegistrySnapshot(remoteStatus, versionNames, components, ranges)
+        }
+
+        private fun component(): Component {
+            val id = requiredString()
+            val system = LinkedHashSet<String>()
+            repeat(buffer.getInt()) { system += requiredString() }
+            val clientCode = string()
+            val name = string()
+            val componentOwner = string()
+            val releaseManager = string()
+            val distribution = nullableDistribution()
+            val releasesInDefaultBranch = when (buffer.get().toInt()) {
+                -1 -> null
+                1 -> true
+                else -> false
+            }
+            return Component(id, system, clientCode, name, componentOwner, releaseManager, distribution, releasesInDefaultBranch, boolean())
+        }
+
+        private fun range(): JiraComponentVersionRange = JiraComponentVersionRange(
+            requiredString(),
+            requiredString(),
+            jiraComponent(),
+            nullableDistribution() ?: throw IllegalStateException("Version range without distribution"),
+            vcsSettings()
+        )
+
+        private fun jiraComponent(): JiraComponent {
+            val projectKey = string()
+            val displayName = string()
+            val format = if (boolean()) ComponentVersionFormat.create(string(), string(), string(), string(), string()) else null
+            val componentInfo = if (boolean()) ComponentInfo(string(), string()) else null
+            val technical = boolean()
+            return JiraComponent(projectKey, displayName, format, componentInfo, technical, boolean())
+        }
+
+        private fun nullableDistribution(): Distribution? =
+            if (boolean()) Distribution(boolean(), boolean(), requiredString()) else null
+
+        private fun vcsSettings(): VCSSettings {
+            val externalRegistry = string()
+            val roots = List(buffer.getInt()) {
+                VersionControlSystemRoot(
+                    requiredString(),
+                    RepositoryType.valueOf(requiredString()),
+                    requiredString(),
+                    string(),
+                    requiredString(),
+                    string()
+                )
+            }
+            return VCSSettings(externalRegistry, roots)
+        }
+
+        private fun boolean(): Boolean = buffer.get().toInt() != 0
+
+        private fun string(): String? {
+            val index = buffer.getInt()
+            return if (index < 0) null else strings[index]
+        }
+
+        private fun requiredString(): String = string() ?: throw IllegalStateException("Unexpected null string")
+    }
+}
@@ -0,0 +1,187 @@
+package org.octopusden.octopus.jira.config
+
+import com.atlassian.cache.Cache
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.atomic.AtomicBoolean
+import org.slf4j.LoggerFactory
+
+/**
+ * Stale-while-revalidate policy of the registry caches.
+ *
+ * Every successfully loaded value is remembered as the last known good value of its key together with a soft TTL:
+ *  - a `get()` of an entry older than [softTtlMillis] returns the cached value immediately and refreshes the entry
+ *    in the background on [executor], one refresh per key at a time,
+ *  - when a load fails (registry unreachable, 5xx, ...) and a last known good value exists, that value is returned
+ *    instead of the error and the key is marked stale until a load succeeds again, see [RevalidatedEntries.staleCount].
+ *    A stale key is retried after [retryAfterMillis],
+ *  - when a load fails and there is no last known good value the error is thrown, so nothing is cached.
+ *
+ * Last known good values survive `removeAll()`: after a remote revision change the caches are cleared and an outage
+ * right then is answered from the previous state rather than failing. They are bounded per cache:
+ *  - a value is served for at most [maxAgeMillis] after its last successful load, after that the error is thrown
+ *    and the key is removed from the cache,
+ *  - at most [maxEntries] keys are remembered, the least recently loaded ones are dropped first. A cached key without
+ *    a last known good value is refreshed on its next read.
+ */
+class StaleWhileRevalidate(
+    val softTtlMillis: Long,
+    val retryAfterMillis: Long,
+    val maxAgeMillis: Long,
+    val maxEntries: Int,
+    val executor: Executor
+) {
+    init {
+        require(softTtlMillis > 0) { "softTtlMillis should be positive" }
+        require(retryAfterMillis > 0) { "retryAfterMillis should be positive" }
+        require(maxAgeMillis >= softTtlMillis) { "maxAgeMillis should not be less than softTtlMillis" }
+        require(maxEntries > 0) { "maxEntries should be positive" }
+    }
+
+    private val entriesByCache = ConcurrentHashMap<String, RevalidatedEntries<*, *>>()
+
+    fun <K : Any, V : Any> entries(cacheName: String, metrics: CacheMetrics, loader: (K) -> V): RevalidatedEntries<K, V> {
+        val entries = RevalidatedEntries(cacheName, this, metrics, loader)
+        entriesByCache[cacheName] = entries
+        metrics.staleCounter = entries::staleCount
+        return entries
+    }
+
+    /** Names of the caches currently serving at least one value whose latest load failed. */
+    fun staleCacheNames(): Set<String> = entriesByCache.filterValues { it.staleCount() > 0 }.keys
+
+    /** Whether the cache currently answers the key with a value whose latest load failed. */
+    fun isStale(cacheName: String, key: Any): Boolean = entriesByCache[cacheName]?.isStale(key) ?: false
+}
+
+class RevalidatedEntries<K : Any, V : Any> internal constructor(
+    private val cacheName: String,
+    private val policy: StaleWhileRevalidate,
+    private val metrics: CacheMetrics,
+    private val loader: (K) -> V
+) {
+    private class Entry<V>(val value: V, val loadedAtMillis: Long, val refreshAtMillis: Long, val stale: Boolean)
+
+    private val lastGood = ConcurrentHashMap<K, Entry<V>>()
+
+    private val refreshing: MutableSet<K> = ConcurrentHashMap.newKeySet()
+
+    private val evicting = AtomicBoolean()
+
+    /** Loads the key, falls back to the last known good value when the load fails. */
+    fun load(key: K): V {
+        val value = try {
+            loader(key)
+        } catch (e: Exception) {
+            val previous = lastGood[key] ?: throw e
+            val now = System.currentTimeMillis()
+            if (now - previous.loadedAtMillis > policy.maxAgeMillis) {
+                lastGood.remove(key, previous)
+                throw e
+            }
+            lastGood[key] = Entry(previous.value, previous.loadedAtMillis, now + policy.retryAfterMillis, true)
+            metrics.recordStaleServed()
+            log.warn("Serving stale value of cache '{}' for key='{}', the registry call failed: {}", cacheName, key, e.message)
+            return previous.value
+        }
+        val now = System.currentTimeMillis()
+        if (lastGood.put(key, Entry(value, now, now + policy.softTtlMillis, false)) == null && lastGood.size > policy.maxEntries) {
+            evict()
+        }
+        return value
+    }
+
+    /** Whether the key is answered with a value whose latest load failed; [key] of another type is never stale. */
+    @Suppress("UNCHECKED_CAST")
+    fun isStale(key: Any): Boolean = lastGood[key as K]?.stale ?: false
+
+    fun hasLastGood(key: K): Boolean = lastGood.containsKey(key)
+
+    fun staleCount(): Int = lastGood.values.count { it.stale }
+
+    /** Whether a cached value of the key is due for a background refresh, always true for a key not remembered. */
+    internal fun isRefreshDue(key: K): Boolean {
+        val entry = lastGood[key] ?: return true
+        return System.currentTimeMillis() >= entry.refreshAtMillis
+    }
+
+    internal fun startRefresh(key: K): Boolean = refreshing.add(key)
+
+    internal fun finishRefresh(key: K) {
+        refreshing.remove(key)
+    }
+
+    /** Drops the least recently loaded keys down to 3/4 of the limit, so evictions are not run on every new key. */
+    private fun evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return
+        }
+        try {
+            val excess = lastGood.size - policy.maxEntries * 3 / 4
+            if (excess > 0) {
+                lastGood.entries
+                    .sortedBy { it.value.loadedAtMillis }
+                    .take(excess)
+                    .forEach { lastGood.remove(it.key, it.value) }
+            }
+        } finally {
+            evicting.set(false)
+        }
+    }
+
+    companion object {
+        private val log = LoggerFactory.getLogger(RevalidatedEntries::class.java)
+    }
+}
+
+/**
+ * [MeteredCache] refreshing entries older than the soft TTL of [RevalidatedEntries] in the background. A refresh goes
+ * through the tracked loader (fenced and coalesced with concurrent misses) and is only stored when the cache was not
+ * cleared meanwhile. A failed refresh of a key without a last known good value removes the key.
+ */
+class RevalidatingCache<K : Any, V : Any>(
+    delegate: Cache<K, V>,
+    private val cacheName: String,
+    private val tracker: LoaderTracker,
+    private val entries: RevalidatedEntries<K, V>,
+    private val executor: Executor
+) : MeteredCache<K, V>(delegate, tracker.metrics.forCache(cacheName)) {
+
+    private val refreshLoader: (K) -> V = tracker.wrap(cacheName, false, entries::load)
+
+    override fun get(key: K): V? {
+        val value = super.get(key)
+        if (value != null && entries.isRefreshDue(key) && entries.startRefresh(key)) {
+            try {
+                executor.execute { refresh(key) }
+            } catch (e: RejectedExecutionException) {
+                entries.finishRefresh(key)
+            }
+        }
+        return value
+    }
+
+    private fun refresh(key: K) {
+        try {
+            val generation = tracker.generationOf(cacheName)
+            val value = refreshLoader(key)
+            if (tracker.generationOf(cacheName) == generation) {
+                put(key, value)
+                tracker.markReplaced(cacheName)
+            }
+        } catch (e: Exception) {
+            log.debug("Background refresh of cache '{}' for key='{}' failed: {}", cacheName, key, e.message)
+            if (!entries.hasLastGood(key)) {
+                // Past the max stale age or evicted: do not keep serving the value, the next get loads it again
+                remove(key)
+            }
+        } finally {
+            entries.finishRefresh(key)
+        }
+    }
+
+    companion object {
+        private val log = LoggerFactory.getLogger(RevalidatingCache::class.java)
+    }
+}
@@ -0,0 +1,110 @@
+package org.octopusden.octopus.jira.config
+
+import org.octopusden.octopus.jira.model.JiraComponentVersionRange
+import org.octopusden.releng.versions.NumericVersionFactory
+import org.octopusden.releng.versions.VersionNames
+import org.octopusden.releng.versions.VersionRange
+import org.octopusden.releng.versions.VersionRangeFactory
+
+/**
+ * In-memory resolution of `(projectKey, version)` to the [JiraComponentVersionRange] containing it, built from the
+ * full set of ranges returned by `getAllJiraComponentVersionRanges`.
+ *
+ * Ranges and versions are parsed and matched by releng-lib ([VersionRangeFactory], [NumericVersionFactory]) with the
+ * version names of the registry, the same way the registry matches them. Ranges are grouped by project key and by
+ * component name, a lookup checks the ranges of one group. The index only answers when the answer is unambiguous,
+ * otherwise it returns null and the caller asks the registry:
+ *  - every range of the group has to be parsed by releng-lib,
+ *  - exactly one range of the group has to contain the version,
+ *  - versions have to start with a digit, prefixed Jira versions are left to the registry; so is a project group with
+ *    a component using a version prefix (Jira versions of such projects carry the prefix).
+ *
+ * @param revision [LoaderTracker.revisionOf] the [CacheId.ALL_JIRA_COMPONENT_VERSION_RANGES] cache the ranges were
+ * read in, the index is current as long as the revision does not change
+ */
+internal class VersionRangeIndex(source: Set<JiraComponentVersionRange>, versionNames: VersionNames, val revision: Long) {
+
+    private val numericVersionFactory = NumericVersionFactory(versionNames)
+    private val byProject: Map<String, RangeGroup>
+    private val byComponent: Map<String, RangeGroup>
+    private val rangesByComponent: Map<String, List<JiraComponentVersionRange>> = source.groupBy { it.componentName }
+    private val componentNamesByProject: Map<String, Set<String>>
+
+    init {
+        val versionRangeFactory = VersionRangeFactory(versionNames)
+        val parsedRanges = HashMap<String, VersionRange?>()
+        val parse = { range: JiraComponentVersionRange ->
+            parsedRanges.getOrPut(range.versionRange) { parseRange(versionRangeFactory, range.versionRange) }
+        }
+        val rangesByProject = source.groupBy { it.jiraComponent.projectKey }
+        byProject = rangesByProject.mapValues { (_, ranges) -> RangeGroup.of(ranges, true, parse) }
+        byComponent = rangesByComponent.mapValues { (_, ranges) -> RangeGroup.of(ranges, false, parse) }
+        componentNamesByProject = rangesByProject.mapValues { (_, ranges) -> ranges.mapTo(LinkedHashSet()) { it.componentName } }
+    }
+
+    /** @return range of the project containing the version or null if unknown locally */
+    fun findByProject(projectKey: String, version: String): JiraComponentVersionRange? =
+        byProject[projectKey]?.let { group -> find(group, version) }
+
+    /** @return range of the component containing the version or null if unknown locally */
+    fun findByComponent(componentName: String, version: String): JiraComponentVersionRange? =
+        byComponent[componentName]?.let { group -> find(group, version) }
+
+    /** @return all version ranges of the component or null if it has none */
+    fun getRanges(componentName: String): List<JiraComponentVersionRange>? = rangesByComponent[componentName]
+
+    /** @return names of components having version ranges in the project or null if the project has none */
+    fun getComponentNames(projectKey: String): Set<String>? = componentNamesByProject[projectKey]
+
+    private fun find(group: RangeGroup, version: String): JiraComponentVersionRange? {
+        val ranges = group.ranges ?: return null
+        if (version.firstOrNull()?.isDigit() != true) {
+            return null
+        }
+        val numericVersion = try {
+            numericVersionFactory.create(version)
+        } catch (e: RuntimeException) {
+            return null
+        }
+        var found: JiraComponentVersionRange? = null
+        for ((versionRange, range) in ranges) {
+            if (versionRange.containsVersion(numericVersion)) {
+                if (found != null) {
+                    return null
+                }
+                found = range
+            }
+        }
+        return found
+    }
+
+    /** Parsed ranges of a group, null if the group is not indexed. */
+    private class RangeGroup(val ranges: List<Pair<VersionRange, JiraComponentVersionRange>>?) {
+
+        companion object {
+            private val NOT_INDEXED = RangeGroup(null)
+
+            fun of(ranges: List<JiraComponentVersionRange>, rejectVersionPrefix: Boolean,
+                   parse: (JiraComponentVersionRange) -> VersionRange?): RangeGroup {
+                val parsed = ArrayList<Pair<VersionRange, JiraComponentVersionRange>>(ranges.size)
+                for (range in ranges) {
+                    if (rejectVersionPrefix && !range.jiraComponent.componentInfo?.versionPrefix.isNullOrEmpty()) {
+                        return NOT_INDEXED
+                    }
+                    parsed += (parse(range) ?: return NOT_INDEXED) to range
+                }
+                return RangeGroup(parsed)
+            }
+        }
+    }
+
+    companion object {
+        /** @return parsed range, null if releng-lib does not accept the notation */
+        private fun parseRange(versionRangeFactory: VersionRangeFactory, versionRange: String): VersionRange? =
+            try {
+                versionRangeFactory.create(versionRange)
+            } catch (e: RuntimeException) {
+                null
+            }
+    }
+}
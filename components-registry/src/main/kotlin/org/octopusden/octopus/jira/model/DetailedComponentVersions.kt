@@ -1,3 +1,10 @@
 package org.octopusden.octopus.jira.model
 
-data class DetailedComponentVersions(val versions: Map<String, DetailedComponentVersion>)
+/**
+ * @param versions detailed versions by requested version
+ * @param errors error message by requested version which could not be loaded
+ */
+data class DetailedComponentVersions @JvmOverloads constructor(
+    val versions: Map<String, DetailedComponentVersion>,
+    val errors: Map<String, String> = emptyMap()
+)
@@ -0,0 +1,451 @@
+package org.octopusden.octopus.jira.config
+
+import com.atlassian.cache.Cache
+import com.atlassian.cache.CacheLoader
+import com.atlassian.cache.CacheManager
+import java.io.File
+import java.lang.management.ManagementFactory
+import java.lang.reflect.Method
+import java.lang.reflect.Proxy
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import javax.management.ObjectName
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+import org.junit.Test
+import org.objenesis.ObjenesisStd
+import org.octopusden.octopus.components.registry.client.ComponentsRegistryServiceClient
+import org.octopusden.octopus.components.registry.core.dto.ComponentInfoDTO
+import org.octopusden.octopus.components.registry.core.dto.ComponentVersionFormatDTO
+import org.octopusden.octopus.components.registry.core.dto.DistributionDTO
+import org.octopusden.octopus.components.registry.core.dto.JiraComponentDTO
+import org.octopusden.octopus.components.registry.core.dto.JiraComponentVersionDTO
+import org.octopusden.octopus.components.registry.core.dto.JiraComponentVersionRangeDTO
+import org.octopusden.octopus.components.registry.core.dto.VCSSettingsDTO
+import org.octopusden.octopus.components.registry.core.dto.VersionControlSystemRootDTO
+import org.octopusden.octopus.components.registry.core.dto.VersionNamesDTO
+import org.octopusden.octopus.jira.exception.JiraApplicationException
+import org.octopusden.octopus.jira.model.JiraProjectVersion
+import org.octopusden.octopus.releng.dto.ComponentVersion
+
+/**
+ * Counts registry client calls per public method of [ComponentRegistryServiceImpl]: converting a registry
+ * response must not trigger further remote calls.
+ */
+class ComponentRegistryServiceImplTest {
+
+    private val client = RecordingClient()
+
+    @Test
+    fun constructionLoadsOnlyVersionNames() {
+        service()
+
+        assertEquals(mapOf("getVersionNames" to 1), client.calls())
+    }
+
+    @Test
+    fun jiraComponentByComponentNameAndVersionConvertsWithoutNestedCalls() {
+        val service = service()
+        val componentVersion = ComponentVersion.create(COMPONENT, "1.5")
+
+        assertTrue(service.getJiraComponentByComponentNameAndVersion(componentVersion).isPresent)
+        assertTrue(service.getJiraComponentByComponentNameAndVersion(componentVersion).isPresent)
+
+        assertEquals(1, client.calls("getJiraComponentForComponentAndVersion"))
+        assertEquals(1, client.calls("getAllJiraComponentVersionRanges"))
+        assertEquals(0, client.calls("getVCSSetting"))
+    }
+
+    @Test
+    fun jiraComponentByProjectAndVersionResolvedFromRanges() {
+        val service = service()
+
+        assertTrue(service.getJiraComponentByProjectAndVersion(JiraProjectVersion(PROJECT, "1.5")).isPresent)
+        assertTrue(service.componentExists(JiraProjectVersion(PROJECT, "1.7")))
+
+        assertEquals(1, client.calls("getAllJiraComponentVersionRanges"))
+        assertEquals(0, client.calls("getJiraComponentByProjectAndVersion"))
+        assertEquals(0, client.calls("getVCSSetting"))
+    }
+
+    @Test
+    fun unavailableVersionRangesFallBackToRegistryWithoutReloadingPerLookup() {
+        val service = service(ComponentRegistryServiceSettings(registerMetricsMBeans = false, staleWhileRevalidate = true))
+        client.failingMethods = setOf("getAllJiraComponentVersionRanges")
+
+        assertTrue(service.getJiraComponentByProjectAndVersion(JiraProjectVersion(PROJECT, "1.5")).isPresent)
+        assertTrue(service.getJiraComponentByProjectAndVersion(JiraProjectVersion(PROJECT, "1.6")).isPresent)
+        assertTrue(service.componentExists(JiraProjectVersion(PROJECT, "1.7")))
+
+        assertEquals(1, client.calls("getAllJiraComponentVersionRanges"))
+        assertEquals(3, client.calls("getJiraComponentByProjectAndVersion"))
+    }
+
+    @Test
+    fun hotfixFlagResolvedWithoutNestedCallsWhenRangesUnavailable() {
+        val service = service(ComponentRegistryServiceSettings(registerMetricsMBeans = false, staleWhileRevalidate = true))
+        client.failingMethods = setOf("getAllJiraComponentVersionRanges")
+
+        val jiraComponentVersion = service.getJiraComponentByProjectAndVersion(JiraProjectVersion(PROJECT, "1.5")).get()
+
+        assertTrue(jiraComponentVersion.component.isHotfixEnabled)
+        // Loaded by the lookup before the conversion, the conversion itself reads it from the cache
+        assertEquals(1, client.calls("getVCSSettingForProject"))
+        assertEquals(0, client.calls("getVCSSetting"))
+    }
+
+    @Test
+    fun jiraComponentByProjectAndVersionFromRegistryConvertsWithoutNestedCalls() {
+        val service = service(ComponentRegistryServiceSettings(resolveVersionRangesLocally = false))
+        val projectVersion = JiraProjectVersion(PROJECT, "1.5")
+
+        assertTrue(service.getJiraComponentByProjectAndVersion(projectVersion).isPresent)
+        assertTrue(service.getJiraComponentByProjectAndVersion(projectVersion).isPresent)
+
+        assertEquals(1, client.calls("getJiraComponentByProjectAndVersion"))
+        assertEquals(0, client.calls("getVCSSetting"))
+    }
+
+    @Test
+    fun cacheMetricsCountRequestsAndLoads() {
+        val service = service(ComponentRegistryServiceSettings(resolveVersionRangesLocally = false, registerMetricsMBeans = false))
+        val projectVersion = JiraProjectVersion(PROJECT, "1.5")
+
+        service.getJiraComponentByProjectAndVersion(projectVersion)
+        service.getJiraComponentByProjectAndVersion(projectVersion)
+
+        val metrics = service.getCacheMetrics().getValue(CacheId.JIRA_COMPONENT_BY_PROJECT_VERSION)
+        assertEquals(2, metrics.requests)
+        assertEquals(1, metrics.hits)
+        assertEquals(1, metrics.misses)
+        assertEquals(1, metrics.loads)
+        assertEquals(1, metrics.entries)
+        assertEquals(1, metrics.loadLatencyHistogram.sum())
+        assertEquals(0, metrics.inFlightLoads)
+    }
+
+    @Test
+    fun staleValueServedWhenRevalidationFails() {
+        val service = service(
+            ComponentRegistryServiceSettings(
+                resolveVersionRangesLocally = false,
+                registerMetricsMBeans = false,
+                staleWhileRevalidate = true,
+                softTtlMillis = 1,
+                staleRetryAfterMillis = 60_000
+            )
+        )
+        val projectVersion = JiraProjectVersion(PROJECT, "1.5")
+        assertTrue(service.getJiraComponentByProjectAndVersion(projectVersion).isPresent)
+        assertFalse(service.isStale(CacheId.JIRA_COMPONENT_BY_PROJECT_VERSION, projectVersion))
+
+        client.failing = true
+        Thread.sleep(5)
+        assertTrue(service.getJiraComponentByProjectAndVersion(projectVersion).isPresent)
+        awaitCondition { CacheId.JIRA_COMPONENT_BY_PROJECT_VERSION in service.getStaleCaches() }
+
+        assertTrue(service.getJiraComponentByProjectAndVersion(projectVersion).isPresent)
+        assertTrue(service.isStale(CacheId.JIRA_COMPONENT_BY_PROJECT_VERSION, projectVersion))
+        assertFalse(service.isStale(CacheId.JIRA_COMPONENT_BY_PROJECT_VERSION, JiraProjectVersion(PROJECT, "1.6")))
+        assertEquals(2, client.calls("getJiraComponentByProjectAndVersion"))
+        assertEquals(1, service.getCacheMetrics().getValue(CacheId.JIRA_COMPONENT_BY_PROJECT_VERSION).staleServed)
+    }
+
+    @Test
+    fun staleValueNotServedPastMaxAge() {
+        val service = service(
+            ComponentRegistryServiceSettings(
+                resolveVersionRangesLocally = false,
+                registerMetricsMBeans = false,
+                staleWhileRevalidate = true,
+                softTtlMillis = 1,
+                staleMaxAgeMillis = 1
+            )
+        )
+        val projectVersion = JiraProjectVersion(PROJECT, "1.5")
+        assertTrue(service.getJiraComponentByProjectAndVersion(projectVersion).isPresent)
+
+        client.failing = true
+        Thread.sleep(5)
+        awaitCondition { runCatching { service.getJiraComponentByProjectAndVersion(projectVersion) }.isFailure }
+
+        assertFailsWith<JiraApplicationException> { service.getJiraComponentByProjectAndVersion(projectVersion) }
+        assertFalse(service.isStale(CacheId.JIRA_COMPONENT_BY_PROJECT_VERSION, projectVersion))
+        assertEquals(0, service.getCacheMetrics().getValue(CacheId.JIRA_COMPONENT_BY_PROJECT_VERSION).staleServed)
+    }
+
+    @Test
+    fun transientFailureNotCachedAsNegative() {
+        val service = service(
+            ComponentRegistryServiceSettings(resolveVersionRangesLocally = false, registerMetricsMBeans = false, staleWhileRevalidate = true)
+        )
+        val projectVersion = JiraProjectVersion(PROJECT, "1.5")
+
+        client.failing = true
+        assertFailsWith<JiraApplicationException> { service.getJiraComponentByProjectAndVersion(projectVersion) }
+        client.failing = false
+
+        assertTrue(service.getJiraComponentByProjectAndVersion(projectVersion).isPresent)
+    }
+
+    @Test
+    fun asyncLookupsShareCachesWithBlockingOnes() {
+        val service = service(ComponentRegistryServiceSettings(registerMetricsMBeans = false))
+        val componentVersion = ComponentVersion.create(COMPONENT, "1.5")
+
+        val loaded = service.getJiraComponentByComponentNameAndVersionAsync(componentVersion)
+            .thenCombine(service.componentExistsAsync(JiraProjectVersion(PROJECT, "1.5"))) { jiraComponent, exists ->
+                jiraComponent.isPresent && exists
+            }
+        assertTrue(loaded.get(5, TimeUnit.SECONDS))
+
+        val cached = service.getJiraComponentByComponentNameAndVersionAsync(componentVersion)
+        assertTrue(cached.isDone)
+        assertTrue(service.getJiraComponentByComponentNameAndVersion(componentVersion).isPresent)
+        assertEquals(1, client.calls("getJiraComponentForComponentAndVersion"))
+    }
+
+    @Test
+    fun bulkLookupFetchesOnlyDistinctMisses() {
+        val service = service(ComponentRegistryServiceSettings(resolveVersionRangesLocally = false, registerMetricsMBeans = false))
+        val versions = listOf("1.1", "1.2", "1.3", "1.2").map { JiraProjectVersion(PROJECT, it) }
+
+        val first = service.getJiraComponentsByProjectAndVersions(versions)
+        val second = service.getJiraComponentsByProjectAndVersions(versions + JiraProjectVersion(PROJECT, "1.4"))
+
+        assertEquals(versions.distinct(), first.keys.toList())
+        assertTrue(first.values.all { it.isPresent })
+        assertTrue(second.getValue(JiraProjectVersion(PROJECT, "1.4")).isPresent)
+        assertEquals(4, client.calls("getJiraComponentByProjectAndVersion"))
+    }
+
+    @Test
+    fun existenceChecksShareRemoteCallsWithValueLookups() {
+        val service = service(ComponentRegistryServiceSettings(resolveVersionRangesLocally = false, registerMetricsMBeans = false))
+        val projectVersions = listOf("1.1", "1.2").map { JiraProjectVersion(PROJECT, it) }
+
+        for (projectVersion in projectVersions) {
+            assertTrue(service.componentExists(projectVersion))
+            assertTrue(service.getJiraComponentByProjectAndVersion(projectVersion).isPresent)
+            assertTrue(service.componentExists(projectVersion))
+        }
+        assertTrue(service.componentExists(PROJECT))
+        assertEquals(setOf(COMPONENT), service.getJiraComponentsByProject(PROJECT))
+
+        assertEquals(projectVersions.size, client.calls("getJiraComponentByProjectAndVersion"))
+        assertEquals(1, client.calls("getJiraComponentsByProject"))
+    }
+
+    @Test
+    fun equalModelValuesShareOneInstanceAcrossCaches() {
+        val service = service(ComponentRegistryServiceSettings(resolveVersionRangesLocally = false, registerMetricsMBeans = false))
+
+        val byProjectVersion = service.getJiraComponentByProjectAndVersion(JiraProjectVersion(PROJECT, "1.1")).get()
+        val byOtherProjectVersion = service.getJiraComponentByProjectAndVersion(JiraProjectVersion(PROJECT, "1.2")).get()
+        val byComponentVersion = service.getJiraComponentByComponentNameAndVersion(ComponentVersion.create(COMPONENT, "1.3")).get()
+
+        assertEquals(2, client.calls("getJiraComponentByProjectAndVersion"))
+        assertSame(byProjectVersion.component, byOtherProjectVersion.component)
+        assertSame(byProjectVersion.component, byComponentVersion.component)
+        assertSame(service.getAllJiraComponentVersionRanges().single().jiraComponent, byProjectVersion.component)
+    }
+
+    @Test
+    fun closeUnregistersMetricsMBeans() {
+        val name = ObjectName("org.octopusden.octopus.jira:type=ComponentRegistryCache,name=${CacheId.ALL_COMPONENTS.name}")
+        val server = ManagementFactory.getPlatformMBeanServer()
+        val service = service()
+        assertTrue(server.isRegistered(name))
+
+        service.close()
+
+        assertFalse(server.isRegistered(name))
+    }
+
+    @Test
+    fun snapshotFileRequiresSnapshotRefreshMode() {
+        assertFailsWith<IllegalArgumentException> { ComponentRegistryServiceSettings(snapshotFile = File("registry.snapshot")) }
+    }
+
+    @Test
+    fun closeStopsBackgroundLookups() {
+        val service = service(ComponentRegistryServiceSettings(registerMetricsMBeans = false))
+        assertTrue(service.getJiraComponentByComponentNameAndVersionAsync(ComponentVersion.create(COMPONENT, "1.5")).join().isPresent)
+
+        service.close()
+
+        assertFailsWith<RejectedExecutionException> {
+            service.getJiraComponentByComponentNameAndVersionAsync(ComponentVersion.create(COMPONENT, "1.6"))
+        }
+    }
+
+    private fun awaitCondition(condition: () -> Boolean) {
+        val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5)
+        while (!condition()) {
+            assertTrue(System.nanoTime() < deadline, "condition not reached in time")
+            Thread.sleep(1)
+        }
+    }
+
+    private fun service(settings: ComponentRegistryServiceSettings = ComponentRegistryServiceSettings()) =
+        ComponentRegistryServiceImpl(client.proxy, mapCacheManager(), settings)
+
+    /**
+     * Client serving one component [COMPONENT] of project [PROJECT] with the single range `[1.0,2.0)`.
+     */
+    private class RecordingClient {
+        private val counts = ConcurrentHashMap<String, AtomicInteger>()
+
+        /** Every call but `getVersionNames` fails like an unreachable registry. */
+        @Volatile
+        var failing = false
+
+        /** Methods failing like an unreachable registry regardless of [failing]. */
+        @Volatile
+        var failingMethods: Set<String> = emptySet()
+
+        private val jiraComponent = dto<JiraComponentDTO>(
+            "projectKey" to PROJECT,
+            "displayName" to COMPONENT,
+            "componentVersionFormat" to dto<ComponentVersionFormatDTO>(
+                "majorVersionFormat" to "\$major.\$minor",
+                "releaseVersionFormat" to "\$major.\$minor.\$service",
+                "buildVersionFormat" to "\$major.\$minor.\$service.\$fix",
+                "lineVersionFormat" to "\$major",
+                "hotfixVersionFormat" to "\$major.\$minor.\$service.\$fix.\$build"
+            ),
+            "componentInfo" to dto<ComponentInfoDTO>("versionPrefix" to "", "versionFormat" to "\$baseVersionFormat"),
+            "technical" to false
+        )
+
+        private val vcsSettings = dto<VCSSettingsDTO>(
+            "externalRegistry" to null,
+            "versionControlSystemRoots" to listOf(
+                dto<VersionControlSystemRootDTO>(
+                    "name" to "main",
+                    "type" to enumConstant(VersionControlSystemRootDTO::class.java, "type", "GIT"),
+                    "vcsPath" to "ssh://git@example.org/$COMPONENT.git",
+                    "tag" to "$COMPONENT-\$version",
+                    "branch" to "master",
+                    "hotfixBranch" to "hotfix/\$major.\$minor"
+                )
+            )
+        )
+
+        private val range = dto<JiraComponentVersionRangeDTO>(
+            "componentName" to COMPONENT,
+            "versionRange" to "[1.0,2.0)",
+            "component" to jiraComponent,
+            "distribution" to dto<DistributionDTO>("explicit" to true, "external" to false, "gav" to "org.example:$COMPONENT"),
+            "vcsSettings" to vcsSettings
+        )
+
+        private val answers: Map<String, (Array<Any?>) -> Any?> = mapOf(
+            "getVersionNames" to { _ ->
+                dto<VersionNamesDTO>("serviceBranch" to "serviceCBranch", "service" to "serviceC", "minor" to "minorC")
+            },
+            "getAllJiraComponentVersionRanges" to { _ -> listOf(range) },
+            "getJiraComponentForComponentAndVersion" to { args -> componentVersion(args[1] as String) },
+            "getJiraComponentByProjectAndVersion" to { args -> componentVersion(args[1] as String) },
+            "getJiraComponentsByProject" to { _ -> setOf(COMPONENT) },
+            "getVCSSetting" to { _ -> vcsSettings },
+            "getVCSSettingForProject" to { _ -> vcsSettings }
+        )
+
+        val proxy: ComponentsRegistryServiceClient = Proxy.newProxyInstance(
+            ComponentsRegistryServiceClient::class.java.classLoader,
+            arrayOf(ComponentsRegistryServiceClient::class.java)
+        ) { _, method, args ->
+            if (method.declaringClass == Any::class.java) {
+                return@newProxyInstance method.invoke(this, *(args ?: emptyArray()))
+            }
+            counts.computeIfAbsent(method.name) { AtomicInteger() }.incrementAndGet()
+            if (failing && method.name != "getVersionNames" || method.name in failingMethods) {
+                throw IllegalStateException("registry is unreachable")
+            }
+            val answer = answers[method.name]
+                ?: throw UnsupportedOperationException("${method.name} is not expected to be called")
+            adapt(method, answer(args ?: emptyArray()))
+        } as ComponentsRegistryServiceClient
+
+        fun calls(method: String): Int = counts[method]?.get() ?: 0
+
+        fun calls(): Map<String, Int> = counts.mapValues { it.value.get() }
+
+        private fun componentVersion(version: String) = dto<JiraComponentVersionDTO>(
+            "name" to COMPONENT,
+            "version" to version,
+            "component" to jiraComponent
+        )
+
+        private fun adapt(method: Method, value: Any?): Any? = when {
+            value is Collection<*> && Set::class.java.isAssignableFrom(method.returnType) -> value.toSet()
+            value is Collection<*> && List::class.java.isAssignableFrom(method.returnType) -> value.toList()
+            else -> value
+        }
+    }
+
+    companion object {
+        private const val COMPONENT = "test-component"
+        private const val PROJECT = "TEST"
+
+        private val objenesis = ObjenesisStd()
+
+        /**
+         * Registry DTOs are created field by field so the test does not depend on their constructor signatures.
+         */
+        private inline fun <reified T : Any> dto(vararg fields: Pair<String, Any?>): T {
+            val instance = objenesis.newInstance(T::class.java)
+            for ((name, value) in fields) {
+                val field = T::class.java.getDeclaredField(name)
+                field.isAccessible = true
+                field.set(instance, value)
+            }
+            return instance
+        }
+
+        private fun enumConstant(type: Class<*>, field: String, name: String): Any =
+            type.getDeclaredField(field).type.enumConstants.first { (it as Enum<*>).name == name }
+
+        /** In-memory [CacheManager] creating caches backed by a map, loading when created with a loader. */
+        @Suppress("UNCHECKED_CAST")
+        private fun mapCacheManager(): CacheManager = Proxy.newProxyInstance(
+            CacheManager::class.java.classLoader,
+            arrayOf(CacheManager::class.java)
+        ) { _, method, args ->
+            if (method.name == "getCache" && args != null && args.size >= 2 && args[1] is CacheLoader<*, *>) {
+                mapCache(args[0] as String, args[1] as CacheLoader<Any, Any>)
+            } else if (method.name == "getCache" && args != null && args.size == 1) {
+                mapCache(args[0] as String, null)
+            } else {
+                throw UnsupportedOperationException("CacheManager.${method.name} is not faked")
+            }
+        } as CacheManager
+
+        @Suppress("UNCHECKED_CAST")
+        private fun mapCache(name: String, loader: CacheLoader<Any, Any>?): Cache<Any, Any> {
+            val entries = ConcurrentHashMap<Any, Any>()
+            return Proxy.newProxyInstance(Cache::class.java.classLoader, arrayOf(Cache::class.java)) { _, method, args ->
+                when (method.name) {
+                    "getName" -> name
+                    "get" -> if (loader == null) entries[args[0]] else entries.computeIfAbsent(args[0]) { key -> loader.load(key) }
+                    "containsKey" -> entries.containsKey(args[0])
+                    "getKeys" -> entries.keys.toList()
+                    "put" -> entries.put(args[0], args[1]).let { null }
+                    "putIfAbsent" -> entries.putIfAbsent(args[0], args[1])
+                    "remove" -> entries.remove(args[0]).let { null }
+                    "removeAll" -> entries.clear()
+                    "hashCode" -> System.identityHashCode(entries)
+                    "equals" -> false
+                    "toString" -> "MapCache($name)"
+                    else -> throw UnsupportedOperationException("Cache.${method.name} is not faked")
+                }
+            } as Cache<Any, Any>
+        }
+    }
+}
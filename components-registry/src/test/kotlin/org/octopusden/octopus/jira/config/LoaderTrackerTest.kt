@@ -0,0 +1,225 @@
+package org.octopusden.octopus.jira.config
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.Executors
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReference
+import java.util.concurrent.locks.LockSupport
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+import org.junit.Test
+
+class LoaderTrackerTest {
+
+    @Test
+    fun reloadsWhenCacheClearedDuringLoad() {
+        val tracker = LoaderTracker()
+        val loadStarted = CountDownLatch(1)
+        val cleaned = CountDownLatch(1)
+        val calls = AtomicInteger()
+        val loader = tracker.wrap<String, String>(CACHE) { key ->
+            if (calls.incrementAndGet() == 1) {
+                loadStarted.countDown()
+                cleaned.await()
+                "$key-stale"
+            } else {
+                "$key-fresh"
+            }
+        }
+        val executor = Executors.newSingleThreadExecutor()
+        try {
+            val result = executor.submit<String> { loader("key") }
+            assertTrue(loadStarted.await(5, TimeUnit.SECONDS))
+            clean(tracker, CACHE)
+            cleaned.countDown()
+
+            assertEquals("key-fresh", result.get(5, TimeUnit.SECONDS))
+            assertEquals(2, calls.get())
+            assertEquals(1L, tracker.staleReloadCount(CACHE))
+            assertEquals(0, tracker.inFlight.get())
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    @Test
+    fun doesNotReloadWhenOtherCacheCleared() {
+        val tracker = LoaderTracker()
+        val calls = AtomicInteger()
+        val loader = tracker.wrap<String, String>(CACHE) { key ->
+            calls.incrementAndGet()
+            clean(tracker, OTHER_CACHE)
+            key
+        }
+
+        assertEquals("key", loader("key"))
+        assertEquals(1, calls.get())
+        assertEquals(0L, tracker.staleReloadCount(CACHE))
+    }
+
+    @Test
+    fun returnsLastValueWhenAttemptsExhausted() {
+        val tracker = LoaderTracker(maxLoadAttempts = 3)
+        val calls = AtomicInteger()
+        val loader = tracker.wrap<String, Int>(CACHE) { _ ->
+            clean(tracker, CACHE)
+            calls.incrementAndGet()
+        }
+
+        assertEquals(3, loader("key"))
+        assertEquals(2L, tracker.staleReloadCount(CACHE))
+    }
+
+    @Test
+    fun coalescesConcurrentLoadsOfSameKey() {
+        val tracker = LoaderTracker()
+        val release = CountDownLatch(1)
+        val calls = AtomicInteger()
+        val loader = tracker.wrap<String, String>(CACHE) { key ->
+            calls.incrementAndGet()
+            release.await()
+            "$key-value"
+        }
+        val threads = 8
+        val executor = Executors.newFixedThreadPool(threads)
+        try {
+            val results = (1..threads).map { executor.submit<String> { loader("key") } }
+            awaitCondition { tracker.coalescedCount(CACHE) == (threads - 1).toLong() }
+            release.countDown()
+
+            results.forEach { assertEquals("key-value", it.get(5, TimeUnit.SECONDS)) }
+            assertEquals(1, calls.get())
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    @Test
+    fun propagatesLoaderFailureToCoalescedCallers() {
+        val tracker = LoaderTracker()
+        val release = CountDownLatch(1)
+        val loader = tracker.wrap<String, String>(CACHE) { _ ->
+            release.await()
+            throw IllegalStateException("remote failure")
+        }
+        val executor = Executors.newFixedThreadPool(2)
+        try {
+            val results = (1..2).map {
+                executor.submit<Throwable?> {
+                    try {
+                        loader("key")
+                        null
+                    } catch (e: IllegalStateException) {
+                        e
+                    }
+                }
+            }
+            awaitCondition { tracker.coalescedCount(CACHE) == 1L }
+            release.countDown()
+
+            results.forEach { assertEquals("remote failure", it.get(5, TimeUnit.SECONDS)?.message) }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    @Test
+    fun recursiveLoadOfSameKeyFailsInsteadOfWaitingForItself() {
+        val tracker = LoaderTracker()
+        lateinit var loader: (String) -> String
+        loader = tracker.wrap(CACHE) { key -> loader(key) }
+
+        val failure = assertFailsWith<IllegalStateException> { loader("key") }
+
+        assertTrue(failure.message!!.contains("Recursive load"))
+        assertEquals(0, tracker.inFlight.get())
+        assertEquals(0L, tracker.coalescedCount(CACHE))
+    }
+
+    /**
+     * Loaders and cleans hammer the same cache. The remote version only changes while a clean is in progress
+     * (odd generation), so a value fetched in a stable even generation `2k` has to be version `k`, and a value
+     * handed out by the tracker must never have been fetched across a generation change.
+     */
+    @Test
+    fun stressLoadsAndCleansNeverHandOutValuesFetchedAcrossClean() {
+        val tracker = LoaderTracker(maxLoadAttempts = 10_000)
+        val remoteVersion = AtomicLong()
+        val loader = tracker.wrap<Int, Fetch>(CACHE) { _ ->
+            val generationBefore = tracker.generationOf(CACHE)
+            pause()
+            val version = remoteVersion.get()
+            pause()
+            Fetch(generationBefore, version, tracker.generationOf(CACHE))
+        }
+        val loaderThreads = 6
+        val loadsPerThread = 2_000
+        val stop = AtomicBoolean()
+        val failure = AtomicReference<String>()
+        val start = CyclicBarrier(loaderThreads + 1)
+        val executor = Executors.newFixedThreadPool(loaderThreads + 1)
+        try {
+            val cleaner = executor.submit {
+                start.await()
+                while (!stop.get()) {
+                    tracker.beginClean(CACHE)
+                    remoteVersion.incrementAndGet()
+                    tracker.markCleaned(CACHE)
+                    pause()
+                }
+            }
+            val loaders = (1..loaderThreads).map { thread ->
+                executor.submit {
+                    start.await()
+                    for (i in 1..loadsPerThread) {
+                        val fetch = loader((thread * loadsPerThread + i) % 16)
+                        if (fetch.generationBefore != fetch.generationAfter) {
+                            failure.compareAndSet(null, "value fetched across a clean: $fetch")
+                        } else if (fetch.generationBefore % 2 == 0L && fetch.version != fetch.generationBefore / 2) {
+                            failure.compareAndSet(null, "stale value for its generation: $fetch")
+                        }
+                    }
+                }
+            }
+            loaders.forEach { it.get(60, TimeUnit.SECONDS) }
+            stop.set(true)
+            cleaner.get(5, TimeUnit.SECONDS)
+
+            assertNull(failure.get())
+            assertEquals(0, tracker.inFlight.get())
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    private data class Fetch(val generationBefore: Long, val version: Long, val generationAfter: Long)
+
+    private fun clean(tracker: LoaderTracker, cacheName: String) {
+        tracker.beginClean(cacheName)
+        tracker.markCleaned(cacheName)
+    }
+
+    private fun pause() {
+        LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(1_000, 20_000))
+    }
+
+    private fun awaitCondition(condition: () -> Boolean) {
+        val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5)
+        while (!condition()) {
+            assertTrue(System.nanoTime() < deadline, "condition not reached in time")
+            Thread.sleep(1)
+        }
+    }
+
+    companion object {
+        private const val CACHE = "ComponentRegistryService:TEST"
+        private const val OTHER_CACHE = "ComponentRegistryService:OTHER"
+    }
+}
@@ -0,0 +1,101 @@
+package org.octopusden.octopus.jira.config
+
+import java.io.File
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNull
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.octopusden.octopus.jira.model.Component
+import org.octopusden.octopus.jira.model.Distribution
+import org.octopusden.octopus.jira.model.JiraComponentVersionRange
+import org.octopusden.octopus.jira.model.RepositoryType
+import org.octopusden.octopus.jira.model.VCSSettings
+import org.octopusden.octopus.jira.model.VersionControlSystemRoot
+import org.octopusden.octopus.releng.dto.ComponentInfo
+import org.octopusden.octopus.releng.dto.JiraComponent
+import org.octopusden.releng.versions.ComponentVersionFormat
+import org.octopusden.releng.versions.VersionNames
+
+class RegistrySnapshotFileTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    @Test
+    fun readsWhatWasWritten() {
+        val file = File(folder.root, "registry/snapshot.bin")
+        val snapshot = snapshot()
+
+        RegistrySnapshotFile.write(snapshot, file)
+        val read = RegistrySnapshotFile.read(file)!!
+
+        assertEquals("rev-42", read.remoteStatus)
+        assertEquals("serviceCBranch", read.versionNames.serviceBranch)
+        assertEquals(snapshot.allComponents, read.allComponents)
+        assertEquals(1, read.allJiraComponentVersionRanges.size)
+        val range = read.allJiraComponentVersionRanges.single()
+        val expected = snapshot.allJiraComponentVersionRanges.single()
+        assertEquals(expected.componentName, range.componentName)
+        assertEquals(expected.versionRange, range.versionRange)
+        assertEquals(expected.distribution, range.distribution)
+        assertEquals(expected.vcsSettings, range.vcsSettings)
+        assertEquals(PROJECT, range.jiraComponent.projectKey)
+        assertEquals("1.0", range.jiraComponent.componentInfo.versionPrefix)
+        assertEquals(setOf(COMPONENT), read.jiraComponentVersionRangesByProject.getValue(PROJECT).map { it.componentName }.toSet())
+    }
+
+    @Test
+    fun absentVersionFormatAndComponentInfoStayAbsent() {
+        val file = File(folder.root, "snapshot.bin")
+
+        RegistrySnapshotFile.write(snapshot(null, null), file)
+        val jiraComponent = RegistrySnapshotFile.read(file)!!.allJiraComponentVersionRanges.single().jiraComponent
+
+        assertNull(jiraComponent.componentVersionFormat)
+        assertNull(jiraComponent.componentInfo)
+        assertEquals(PROJECT, jiraComponent.projectKey)
+    }
+
+    @Test
+    fun missingFileIsIgnored() {
+        assertNull(RegistrySnapshotFile.read(File(folder.root, "absent.bin")))
+    }
+
+    @Test
+    fun corruptedFileIsRejected() {
+        val file = folder.newFile("snapshot.bin")
+        RegistrySnapshotFile.write(snapshot(), file)
+        val bytes = file.readBytes()
+        bytes[bytes.size - 1] = (bytes[bytes.size - 1] + 1).toByte()
+        file.writeBytes(bytes)
+
+        assertFailsWith<IllegalStateException> { RegistrySnapshotFile.read(file) }
+    }
+
+    private fun snapshot(
+        versionFormat: ComponentVersionFormat? = ComponentVersionFormat.create(
+            "\$major.\$minor", "\$major.\$minor.\$service", "\$major.\$minor.\$service.\$fix", "\$major", null
+        ),
+        componentInfo: ComponentInfo? = ComponentInfo("1.0", "\$versionPrefix-\$baseVersionFormat")
+    ): RegistrySnapshot {
+        val distribution = Distribution(true, false, "org.example:$COMPONENT")
+        val jiraComponent = JiraComponent(PROJECT, COMPONENT, versionFormat, componentInfo, false, true)
+        val vcsSettings = VCSSettings(
+            null,
+            listOf(VersionControlSystemRoot("main", RepositoryType.GIT, "ssh://git@example.org/$COMPONENT.git", null, "master", "hotfix"))
+        )
+        return RegistrySnapshot(
+            "rev-42",
+            VersionNames("serviceCBranch", "serviceC", "minorC"),
+            listOf(Component(COMPONENT, setOf("CLASSIC"), null, "Test component", "owner", null, distribution, null, false)),
+            setOf(JiraComponentVersionRange(COMPONENT, "[1.0,2.0)", jiraComponent, distribution, vcsSettings))
+        )
+    }
+
+    companion object {
+        private const val COMPONENT = "test-component"
+        private const val PROJECT = "TEST"
+    }
+}
@@ -0,0 +1,65 @@
+package org.octopusden.octopus.jira.utils;
+
+import com.atlassian.jira.issue.Issue;
+import org.octopusden.octopus.jira.enums.JiraCustomField;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Custom field values of a list of issues in columnar form: one value array per field,
+ * the value of {@code getIssues().get(i)} is stored at index {@code i} of every array.
+ */
+public class CustomFieldValues {
+
+    private final List<Issue> issues;
+    private final EnumMap<JiraCustomField, Object[]> values;
+
+    public CustomFieldValues(List<Issue> issues, EnumMap<JiraCustomField, Object[]> values) {
+        this.issues = Collections.unmodifiableList(issues);
+        this.values = values;
+    }
+
+    public List<Issue> getIssues() {
+        return issues;
+    }
+
+    /**
+     * @return requested fields which are configured in Jira
+     */
+    public Set<JiraCustomField> getFields() {
+        return Collections.unmodifiableSet(values.keySet());
+    }
+
+    /**
+     * @return column of raw values or null if the field was not requested or is not configured in Jira
+     */
+    public Object[] getValues(JiraCustomField field) {
+        return values.get(field);
+    }
+
+    public Object getValue(JiraCustomField field, int issueIndex) {
+        Object[] column = values.get(field);
+        return column != null ? column[issueIndex] : null;
+    }
+
+    /**
+     * String value like {@link IJiraHelper#getCustomFieldValueAsString}: empty string for a field which is not
+     * configured, null for an empty value.
+     */
+    public String getValueAsString(JiraCustomField field, int issueIndex) {
+        Object[] column = values.get(field);
+        if (column == null) {
+            return "";
+        }
+        Object value = column[issueIndex];
+        return value != null ? value.toString() : null;
+    }
+
+    public Map<JiraCustomField, Object[]> asMap() {
+        return Collections.unmodifiableMap(values);
+    }
+}
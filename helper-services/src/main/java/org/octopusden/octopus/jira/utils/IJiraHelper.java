@@ -10,11 +10,13 @@ import com.atlassian.jira.project.version.Version;
 import com.atlassian.jira.user.ApplicationUser;
 import com.atlassian.query.Query;
 import org.octopusden.octopus.jira.enums.JiraCustomField;
+import org.octopusden.octopus.releng.dto.Language;
 import org.slf4j.Logger;
 
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 
 public interface IJiraHelper {
 
@@ -52,10 +54,30 @@ public interface IJiraHelper {
 
     List<Version> getCustomFieldValueAsVersionList(com.atlassian.jira.issue.fields.CustomField customField, Issue issue);
 
+    /**
+     * Bulk variant of {@link #getCustomFieldValue(Issue, JiraCustomField)} for English field names.
+     * @see #getCustomFieldValues(Collection, Set, Language)
+     */
+    CustomFieldValues getCustomFieldValues(Collection<Issue> issues, Set<JiraCustomField> customFields);
+
+    /**
+     * Extract values of several custom fields for many issues at once. Every field is resolved once,
+     * fields not configured in Jira are skipped. Client release notes of Backporting issues are taken from
+     * their parents like in {@link #getClientReleaseNotesValue}; the distinct parents are loaded in one batch and read
+     * once, a Backporting issue whose parent is not found keeps its own value.
+     * @param issues issues to read values from
+     * @param customFields fields to read
+     * @param language language of field names
+     * @return Returns values in columnar form, in the order of given issues
+     */
+    CustomFieldValues getCustomFieldValues(Collection<Issue> issues, Set<JiraCustomField> customFields, Language language);
+
     List<Issue> getIssueWithPartialReopen(ApplicationUser user, Project project, List<Version> filteredVersions);
 
     List<Issue> getIssuesWithPartialReopenUpdatedAfterDate(ApplicationUser user, Project project, List<Version> versions, Date date);
 
+    List<String> getIssueKeysWithPartialReopenUpdatedAfterDate(ApplicationUser user, Project project, List<Version> versions, Date date);
+
     Long[] getVersionIds(Collection<Version> versions);
 
     Issue getIssue(String key);
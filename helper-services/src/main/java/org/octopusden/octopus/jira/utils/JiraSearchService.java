@@ -10,6 +10,8 @@ import com.atlassian.query.Query;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 public interface JiraSearchService {
 
@@ -17,14 +19,106 @@ public interface JiraSearchService {
 
     List<Issue> findIssues(ApplicationUser user, Project project, List<Version> versions);
 
+    /**
+     * Parallel variant of {@link #findIssues(ApplicationUser, Project, List)}.
+     * Versions are split into shards of at most shardSize versions, shard searches run concurrently on the executor
+     * as the given user and their results are merged by issue key, an issue fixed in several shards is returned once.
+     * The calling thread blocks until all shards completed. If a shard fails, shards not started yet are skipped and
+     * running ones stop before fetching their next page; the failure is rethrown.
+     * <p>
+     * The executor must not be a bounded executor the calling thread itself runs on: with all its threads busy in
+     * callers waiting for their shards, the shards are never run and the callers deadlock.
+     * @param user Jira application user, also set as logged in user of the executor threads during the search
+     * @param project project
+     * @param versions fix versions
+     * @param shardSize maximum number of versions in one search
+     * @param executor executor running shard searches, expected to be bounded and dedicated to shard searches
+     * @return Returns found issues ordered by issue key
+     */
+    List<Issue> findIssues(ApplicationUser user, Project project, List<Version> versions, int shardSize, Executor executor);
+
     List<Issue> findReleasedIssues(Version version);
 
     List<Issue> getIssuesFromQuery(ApplicationUser user, Query query);
 
+    /**
+     * Lazily stream issues found by the query.
+     * Issues are fetched page by page, so at most one page is held in memory, and no more pages are requested
+     * once the consumer stops (e.g. short-circuiting operations like findFirst, anyMatch or limit).
+     * @param user Jira application user
+     * @param query search query
+     * @return Returns sequential ordered stream of found issues
+     */
+    Stream<Issue> streamIssuesFromQuery(ApplicationUser user, Query query);
+
+    /**
+     * Find ids of issues matching the query. Ids are read from the search index, issues are not loaded.
+     * @param user Jira application user
+     * @param query search query, its ordering is ignored
+     * @return Returns ids of found issues in ascending order
+     */
+    long[] getIssueIdsFromQuery(ApplicationUser user, Query query);
+
+    /**
+     * Find keys of issues matching the query. Keys are read from the search index, issues are not loaded.
+     * @param user Jira application user
+     * @param query search query, its ordering is ignored
+     * @return Returns keys of found issues ordered by issue key
+     */
+    List<String> getIssueKeysFromQuery(ApplicationUser user, Query query);
+
     List<Issue> findIssues(ApplicationUser user, Project project, Version version, IssueType issueType, boolean isReleased);
 
     List<Issue> findIssues(ApplicationUser user, Version version, IssueType issueType, boolean isReleased);
 
+    /**
+     * Id-only variant of {@link #findIssues(ApplicationUser, Project, Version)}, issues are not loaded.
+     * @return Returns ids of found issues in ascending order
+     */
+    long[] findIssueIds(ApplicationUser user, Project project, Version version);
+
+    /**
+     * Id-only variant of {@link #findIssues(ApplicationUser, Project, List)}, issues are not loaded.
+     * @return Returns ids of found issues in ascending order
+     */
+    long[] findIssueIds(ApplicationUser user, Project project, List<Version> versions);
+
+    /**
+     * Id-only variant of {@link #findIssues(ApplicationUser, Project, Version, IssueType, boolean)}, issues are not loaded.
+     * @return Returns ids of found issues in ascending order
+     */
+    long[] findIssueIds(ApplicationUser user, Project project, Version version, IssueType issueType, boolean isReleased);
+
+    /**
+     * Id-only variant of {@link #findIssues(ApplicationUser, Version, IssueType, boolean)}, issues are not loaded.
+     * @return Returns ids of found issues in ascending order
+     */
+    long[] findIssueIds(ApplicationUser user, Version version, IssueType issueType, boolean isReleased);
+
+    /**
+     * Key-only variant of {@link #findIssues(ApplicationUser, Project, Version)}, issues are not loaded.
+     * @return Returns keys of found issues ordered by issue key
+     */
+    List<String> findIssueKeys(ApplicationUser user, Project project, Version version);
+
+    /**
+     * Key-only variant of {@link #findIssues(ApplicationUser, Project, List)}, issues are not loaded.
+     * @return Returns keys of found issues ordered by issue key
+     */
+    List<String> findIssueKeys(ApplicationUser user, Project project, List<Version> versions);
+
+    /**
+     * Key-only variant of {@link #findIssues(ApplicationUser, Project, Version, IssueType, boolean)}, issues are not loaded.
+     * @return Returns keys of found issues ordered by issue key
+     */
+    List<String> findIssueKeys(ApplicationUser user, Project project, Version version, IssueType issueType, boolean isReleased);
+
+    /**
+     * Key-only variant of {@link #findIssues(ApplicationUser, Version, IssueType, boolean)}, issues are not loaded.
+     * @return Returns keys of found issues ordered by issue key
+     */
+    List<String> findIssueKeys(ApplicationUser user, Version version, IssueType issueType, boolean isReleased);
+
     /**
      * Find issues by custom field like comparison.
      * Wrapper for {@link #findIssuesByCustomFieldValue(ApplicationUser, CustomField, String, boolean)} with equalComparison = false.
@@ -33,6 +127,7 @@ public interface JiraSearchService {
 
     /**
      * Find issues which custom field is equals or likes by given search criteria.
+     * Equal comparison narrows candidates by the search index where the field supports it and skips issues with empty field.
      * @param user Jira application user
      * @param cf custom field
      * @param searchFieldValue searched value
@@ -0,0 +1,344 @@
+package org.octopusden.octopus.jira.utils.impl;
+
+import com.atlassian.event.api.EventListener;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.jira.bc.issue.search.SearchService;
+import com.atlassian.jira.event.issue.IssueEvent;
+import com.atlassian.jira.event.project.AbstractVersionEvent;
+import com.atlassian.jira.event.type.EventType;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.issue.fields.CustomField;
+import com.atlassian.jira.issue.issuetype.IssueType;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.project.version.Version;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.query.Query;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.octopusden.octopus.jira.exception.JiraSearchEngineException;
+import org.octopusden.octopus.jira.utils.JiraSearchService;
+import org.apache.commons.lang.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Caching decorator for {@link JiraSearchService}.
+ * Results of project and version scoped {@code findIssues} calls are cached per user and normalized JQL,
+ * the cache is bounded by the total number of cached issues and entries expire after the configured time to live.
+ * Entries are evicted as soon as an issue of the watched project or a watched version changes; a search that was
+ * running when such a change happened is handed to its callers but not kept.
+ * Other methods are delegated as is.
+ * <p>
+ * Create the decorator with {@link #create}, which registers it in the {@link EventPublisher};
+ * call {@link #close()} to unregister it.
+ */
+public class CachingJiraSearchService implements JiraSearchService, AutoCloseable {
+
+    /** Default bound of the number of issues held by all cached results together. */
+    public static final long DEFAULT_MAXIMUM_ISSUES = 50_000;
+    public static final long DEFAULT_TTL_SECONDS = 60;
+    private static final Logger LOG = LoggerFactory.getLogger(CachingJiraSearchService.class);
+
+    private final JiraSearchService delegate;
+    private final SearchService searchService;
+    private final EventPublisher eventPublisher;
+    private final Cache<CacheKey, CachedIssues> cache;
+    private final Set<PendingSearch> pendingSearches = ConcurrentHashMap.newKeySet();
+
+    CachingJiraSearchService(JiraSearchService delegate, SearchService searchService, EventPublisher eventPublisher,
+                             long maximumIssues, long ttl, TimeUnit ttlUnit) {
+        Validate.notNull(delegate, "delegate can't be null");
+        this.delegate = delegate;
+        this.searchService = searchService;
+        this.eventPublisher = eventPublisher;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maximumIssues)
+                .weigher((CacheKey key, CachedIssues value) -> value.issues.size() + 1)
+                .expireAfterWrite(ttl, ttlUnit)
+                .recordStats()
+                .build();
+    }
+
+    public static CachingJiraSearchService create(JiraSearchService delegate, SearchService searchService, EventPublisher eventPublisher) {
+        return create(delegate, searchService, eventPublisher, DEFAULT_MAXIMUM_ISSUES, DEFAULT_TTL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param maximumIssues bound of the number of issues held by all cached results together
+     */
+    public static CachingJiraSearchService create(JiraSearchService delegate, SearchService searchService, EventPublisher eventPublisher,
+                                                  long maximumIssues, long ttl, TimeUnit ttlUnit) {
+        CachingJiraSearchService service = new CachingJiraSearchService(delegate, searchService, eventPublisher, maximumIssues, ttl, ttlUnit);
+        eventPublisher.register(service);
+        return service;
+    }
+
+    @Override
+    public List<Issue> findIssues(ApplicationUser user, Project project, Version version) {
+        Query query = JiraSearchServiceImpl.buildFixVersionQuery(project, version);
+        return getCached(user, query, project, Collections.singletonList(version));
+    }
+
+    @Override
+    public List<Issue> findIssues(ApplicationUser user, Project project, List<Version> versions) {
+        Query query = JiraSearchServiceImpl.buildFixVersionsQuery(project, versions);
+        return getCached(user, query, project, versions);
+    }
+
+    @Override
+    public List<Issue> findIssues(ApplicationUser user, Project project, List<Version> versions, int shardSize, Executor executor) {
+        return delegate.findIssues(user, project, versions, shardSize, executor);
+    }
+
+    @Override
+    public List<Issue> findReleasedIssues(Version version) {
+        return delegate.findReleasedIssues(version);
+    }
+
+    @Override
+    public List<Issue> getIssuesFromQuery(ApplicationUser user, Query query) {
+        return delegate.getIssuesFromQuery(user, query);
+    }
+
+    @Override
+    public Stream<Issue> streamIssuesFromQuery(ApplicationUser user, Query query) {
+        return delegate.streamIssuesFromQuery(user, query);
+    }
+
+    @Override
+    public long[] getIssueIdsFromQuery(ApplicationUser user, Query query) {
+        return delegate.getIssueIdsFromQuery(user, query);
+    }
+
+    @Override
+    public List<String> getIssueKeysFromQuery(ApplicationUser user, Query query) {
+        return delegate.getIssueKeysFromQuery(user, query);
+    }
+
+    @Override
+    public List<Issue> findIssues(ApplicationUser user, Project project, Version version, IssueType issueType, boolean isReleased) {
+        Query query = JiraSearchServiceImpl.buildIssueTypeQuery(project, version, issueType, isReleased);
+        return getCached(user, query, project, Collections.singletonList(version));
+    }
+
+    @Override
+    public List<Issue> findIssues(ApplicationUser user, Version version, IssueType issueType, boolean isReleased) {
+        return findIssues(user, version.getProject(), version, issueType, isReleased);
+    }
+
+    @Override
+    public long[] findIssueIds(ApplicationUser user, Project project, Version version) {
+        return delegate.findIssueIds(user, project, version);
+    }
+
+    @Override
+    public long[] findIssueIds(ApplicationUser user, Project project, List<Version> versions) {
+        return delegate.findIssueIds(user, project, versions);
+    }
+
+    @Override
+    public long[] findIssueIds(ApplicationUser user, Project project, Version version, IssueType issueType, boolean isReleased) {
+        return delegate.findIssueIds(user, project, version, issueType, isReleased);
+    }
+
+    @Override
+    public long[] findIssueIds(ApplicationUser user, Version version, IssueType issueType, boolean isReleased) {
+        return delegate.findIssueIds(user, version, issueType, isReleased);
+    }
+
+    @Override
+    public List<String> findIssueKeys(ApplicationUser user, Project project, Version version) {
+        return delegate.findIssueKeys(user, project, version);
+    }
+
+    @Override
+    public List<String> findIssueKeys(ApplicationUser user, Project project, List<Version> versions) {
+        return delegate.findIssueKeys(user, project, versions);
+    }
+
+    @Override
+    public List<String> findIssueKeys(ApplicationUser user, Project project, Version version, IssueType issueType, boolean isReleased) {
+        return delegate.findIssueKeys(user, project, version, issueType, isReleased);
+    }
+
+    @Override
+    public List<String> findIssueKeys(ApplicationUser user, Version version, IssueType issueType, boolean isReleased) {
+        return delegate.findIssueKeys(user, version, issueType, isReleased);
+    }
+
+    @Override
+    public List<Issue> findIssuesByCustomFieldValue(ApplicationUser user, CustomField cf, String value) {
+        return delegate.findIssuesByCustomFieldValue(user, cf, value);
+    }
+
+    @Override
+    public Collection<Issue> findIssuesByCustomFieldValue(ApplicationUser user, CustomField cf, String searchFieldValue, boolean equalComparison) {
+        return delegate.findIssuesByCustomFieldValue(user, cf, searchFieldValue, equalComparison);
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @EventListener
+    public void onIssueEvent(IssueEvent event) {
+        Issue issue = event.getIssue();
+        if (issue == null) {
+            return;
+        }
+        Long projectId = issue.getProjectId();
+        if (EventType.ISSUE_MOVED_ID.equals(event.getEventTypeId())) {
+            // The result of a running search is not known yet, it may contain the issue whatever its project
+            Long issueId = issue.getId();
+            invalidateIf(key -> true, (key, value) -> key.projectId.equals(projectId) || containsIssue(value.issues, issueId));
+        } else {
+            invalidateIf(key -> key.projectId.equals(projectId), (key, value) -> key.projectId.equals(projectId));
+        }
+    }
+
+    @EventListener
+    public void onVersionEvent(AbstractVersionEvent event) {
+        long versionId = event.getVersionId();
+        invalidateIf(key -> key.versionIds.contains(versionId), (key, value) -> key.versionIds.contains(versionId));
+    }
+
+    @Override
+    public void close() {
+        eventPublisher.unregister(this);
+        cache.invalidateAll();
+    }
+
+    List<Issue> getCached(ApplicationUser user, Query query, Project project, List<Version> versions) {
+        CacheKey key = new CacheKey(user, normalizeJql(searchService.getJqlString(query)), project, versions);
+        CachedIssues cached;
+        try {
+            cached = cache.get(key, () -> search(key, user, query));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new JiraSearchEngineException("Jira Search Service Failed", e.getCause());
+        }
+        // The result is in the cache now, so an invalidation from here on finds it there
+        pendingSearches.remove(cached.search);
+        if (cached.search.invalidated) {
+            cache.asMap().remove(key, cached);
+        }
+        return new ArrayList<>(cached.issues);
+    }
+
+    /**
+     * Runs the search registered as pending: an invalidation matching its key while it runs, or until its result
+     * reaches the cache, marks it so the result is dropped from the cache.
+     */
+    private CachedIssues search(CacheKey key, ApplicationUser user, Query query) {
+        PendingSearch search = new PendingSearch(key);
+        pendingSearches.add(search);
+        try {
+            return new CachedIssues(Collections.unmodifiableList(delegate.getIssuesFromQuery(user, query)), search);
+        } catch (RuntimeException e) {
+            pendingSearches.remove(search);
+            throw e;
+        }
+    }
+
+    /**
+     * Marks matching pending searches first and then evicts matching entries, see {@link #search}.
+     */
+    private synchronized void invalidateIf(Predicate<CacheKey> pendingPredicate, BiPredicate<CacheKey, CachedIssues> entryPredicate) {
+        for (PendingSearch search : pendingSearches) {
+            if (pendingPredicate.test(search.key)) {
+                search.invalidated = true;
+            }
+        }
+        if (cache.asMap().entrySet().removeIf(entry -> entryPredicate.test(entry.getKey(), entry.getValue())) && LOG.isDebugEnabled()) {
+            LOG.debug("Evicted cached search results, " + cache.size() + " entries left");
+        }
+    }
+
+    private static boolean containsIssue(List<Issue> issues, Long issueId) {
+        return issues.stream().anyMatch(issue -> issueId.equals(issue.getId()));
+    }
+
+    private static String normalizeJql(String jql) {
+        return jql.trim().replaceAll("\\s+", " ");
+    }
+
+    private static final class PendingSearch {
+        private final CacheKey key;
+        private volatile boolean invalidated;
+
+        private PendingSearch(CacheKey key) {
+            this.key = key;
+        }
+    }
+
+    private static final class CachedIssues {
+        private final List<Issue> issues;
+        /** Search that produced the result. */
+        private final PendingSearch search;
+
+        private CachedIssues(List<Issue> issues, PendingSearch search) {
+            this.issues = issues;
+            this.search = search;
+        }
+    }
+
+    private static final class CacheKey {
+        private final String userKey;
+        private final String jql;
+        private final Long projectId;
+        private final Set<Long> versionIds;
+
+        private CacheKey(ApplicationUser user, String jql, Project project, List<Version> versions) {
+            this.userKey = user != null ? user.getKey() : "";
+            this.jql = jql;
+            this.projectId = project.getId();
+            this.versionIds = new HashSet<>();
+            for (Version version : versions) {
+                versionIds.add(version.getId());
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            CacheKey cacheKey = (CacheKey) o;
+            return userKey.equals(cacheKey.userKey) && jql.equals(cacheKey.jql);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userKey, jql);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package org.octopusden.octopus.jira.utils.impl;
+
+import com.atlassian.event.api.EventListener;
+import com.atlassian.jira.event.ClearCacheEvent;
+import com.atlassian.jira.event.issue.field.CustomFieldCreatedEvent;
+import com.atlassian.jira.event.issue.field.CustomFieldDeletedEvent;
+import com.atlassian.jira.event.issue.field.CustomFieldUpdatedEvent;
+import com.atlassian.jira.issue.CustomFieldManager;
+import com.atlassian.jira.issue.fields.CustomField;
+import org.octopusden.octopus.jira.enums.JiraCustomField;
+import org.octopusden.octopus.releng.dto.Language;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Resolves {@link JiraCustomField} constants (in every {@link Language}) to Jira custom fields once and keeps
+ * the resolution until custom field configuration changes, at most for the time to live.
+ * <p>
+ * The registry has to be registered in the event publisher to be notified about configuration changes. Until
+ * {@link #setTrackConfigurationChanges(boolean)} is switched on, fields missing in Jira are not remembered and
+ * are looked up again on every call, so fields created later are still found.
+ */
+public class CustomFieldRegistry {
+
+    /** Time to live of a registry notified about configuration changes. */
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    /** Time to live of a registry not registered in the event publisher. */
+    public static final long UNTRACKED_TTL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final CustomFieldManager customFieldManager;
+    private final long ttlNanos;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    /** Bumped by {@link #invalidate()}, a snapshot built across an invalidation is not kept. */
+    private final AtomicLong generation = new AtomicLong();
+    private volatile boolean trackConfigurationChanges;
+
+    /**
+     * Creates a registry keeping resolutions for {@link #DEFAULT_TTL_MILLIS}, to be registered in the event publisher.
+     */
+    public CustomFieldRegistry(CustomFieldManager customFieldManager) {
+        this(customFieldManager, DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * @param ttlMillis time a resolution is kept for; a registry that is not notified about configuration changes
+     *                  keeps resolving a renamed or deleted field to the former field for up to this time, use a short
+     *                  one like {@link #UNTRACKED_TTL_MILLIS} there
+     */
+    public CustomFieldRegistry(CustomFieldManager customFieldManager, long ttlMillis) {
+        this.customFieldManager = customFieldManager;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    public void setTrackConfigurationChanges(boolean trackConfigurationChanges) {
+        this.trackConfigurationChanges = trackConfigurationChanges;
+    }
+
+    /**
+     * @return resolved English variant of the field, never null
+     */
+    public ResolvedCustomField get(JiraCustomField field) {
+        return get(field, Language.EN);
+    }
+
+    /**
+     * @return resolved language variant of the field, never null
+     */
+    public ResolvedCustomField get(JiraCustomField field, Language language) {
+        ResolvedCustomField resolved = getSnapshot().byLanguage.get(language).get(field);
+        return resolved.exists() || trackConfigurationChanges ? resolved : resolve(field.getFieldName(language));
+    }
+
+    /**
+     * Resolves field by name, names of {@link JiraCustomField} constants are served from the registry.
+     * @return resolved field, never null
+     */
+    public ResolvedCustomField get(String fieldName) {
+        ResolvedCustomField resolved = getSnapshot().byName.get(fieldName);
+        if (resolved != null && (resolved.exists() || trackConfigurationChanges)) {
+            return resolved;
+        }
+        return resolve(fieldName);
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+        snapshot.set(null);
+    }
+
+    @EventListener
+    public void onClearCache(ClearCacheEvent event) {
+        invalidate();
+    }
+
+    @EventListener
+    public void onCustomFieldCreated(CustomFieldCreatedEvent event) {
+        invalidate();
+    }
+
+    @EventListener
+    public void onCustomFieldUpdated(CustomFieldUpdatedEvent event) {
+        invalidate();
+    }
+
+    @EventListener
+    public void onCustomFieldDeleted(CustomFieldDeletedEvent event) {
+        invalidate();
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot.get();
+        if (current == null || System.nanoTime() - current.builtAtNanos > ttlNanos) {
+            long startGeneration = generation.get();
+            current = new Snapshot();
+            for (Language language : Language.values()) {
+                EnumMap<JiraCustomField, ResolvedCustomField> fields = new EnumMap<>(JiraCustomField.class);
+                for (JiraCustomField field : JiraCustomField.values()) {
+                    String fieldName = field.getFieldName(language);
+                    ResolvedCustomField resolved = current.byName.get(fieldName);
+                    if (resolved == null) {
+                        resolved = resolve(fieldName);
+                        current.byName.put(fieldName, resolved);
+                    }
+                    fields.put(field, resolved);
+                }
+                current.byLanguage.put(language, fields);
+            }
+            snapshot.set(current);
+            if (generation.get() != startGeneration) {
+                // Invalidated while building: still answers this call, but is not kept
+                snapshot.compareAndSet(current, null);
+            }
+        }
+        return current;
+    }
+
+    private ResolvedCustomField resolve(String fieldName) {
+        return new ResolvedCustomField(fieldName, customFieldManager.getCustomFieldObjectByName(fieldName));
+    }
+
+    private static final class Snapshot {
+        private final Map<Language, EnumMap<JiraCustomField, ResolvedCustomField>> byLanguage = new EnumMap<>(Language.class);
+        private final Map<String, ResolvedCustomField> byName = new HashMap<>();
+        private final long builtAtNanos = System.nanoTime();
+    }
+
+    public static final class ResolvedCustomField {
+        private final String fieldName;
+        private final CustomField customField;
+
+        private ResolvedCustomField(String fieldName, CustomField customField) {
+            this.fieldName = fieldName;
+            this.customField = customField;
+        }
+
+        public String getFieldName() {
+            return fieldName;
+        }
+
+        public boolean exists() {
+            return customField != null;
+        }
+
+        /**
+         * @return custom field or null if it is not configured in Jira
+         */
+        public CustomField getCustomField() {
+            return customField;
+        }
+
+        /**
+         * @return custom field id (e.g. customfield_10000) or null if it is not configured in Jira
+         */
+        public String getId() {
+            return customField != null ? customField.getId() : null;
+        }
+
+        public Long getIdAsLong() {
+            return customField != null ? customField.getIdAsLong() : null;
+        }
+    }
+}
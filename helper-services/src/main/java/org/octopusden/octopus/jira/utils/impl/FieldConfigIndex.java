@@ -0,0 +1,129 @@
+package org.octopusden.octopus.jira.utils.impl;
+
+import com.atlassian.event.api.EventListener;
+import com.atlassian.jira.event.ClearCacheEvent;
+import com.atlassian.jira.event.issue.field.CustomFieldDeletedEvent;
+import com.atlassian.jira.event.issue.field.CustomFieldUpdatedEvent;
+import com.atlassian.jira.event.issue.field.config.manager.FieldConfigSchemeCreatedEvent;
+import com.atlassian.jira.event.issue.field.config.manager.FieldConfigSchemeDeletedEvent;
+import com.atlassian.jira.event.issue.field.config.manager.FieldConfigSchemeUpdatedEvent;
+import com.atlassian.jira.issue.fields.CustomField;
+import com.atlassian.jira.issue.fields.config.FieldConfig;
+import com.atlassian.jira.issue.fields.config.FieldConfigScheme;
+import com.atlassian.jira.project.Project;
+import org.apache.commons.collections.MultiMap;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per custom field {@code projectKey -> FieldConfig} index.
+ * <p>
+ * The project map of a custom field is built on first request from its configuration schemes, keeping the first
+ * matching scheme like a sequential scan would. It is rebuilt when Jira hands out a new instance of the custom field
+ * (custom field objects are recreated when their configuration is reloaded) and dropped on custom field and field
+ * configuration scheme events, e.g. a project added to a field context. The time to live bounds the staleness of an
+ * index that is not registered in the event publisher.
+ */
+public class FieldConfigIndex {
+
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    /** Bumped by {@link #invalidate()}, a project map built across an invalidation is not kept. */
+    private final AtomicLong generation = new AtomicLong();
+    private final long ttlNanos;
+
+    public FieldConfigIndex() {
+        this(DEFAULT_TTL_MILLIS);
+    }
+
+    public FieldConfigIndex(long ttlMillis) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    /**
+     * @return field config of the custom field in the project or null if the field has no configuration there
+     */
+    public FieldConfig get(CustomField customField, String projectKey) {
+        Entry entry = entries.get(customField.getId());
+        if (entry == null || entry.customField != customField || System.nanoTime() - entry.builtAtNanos > ttlNanos) {
+            long startGeneration = generation.get();
+            entry = new Entry(customField, buildProjectConfigs(customField));
+            entries.put(customField.getId(), entry);
+            if (generation.get() != startGeneration) {
+                // Invalidated while building: still answers this call, but is not kept
+                entries.remove(customField.getId(), entry);
+            }
+        }
+        return entry.configByProjectKey.get(projectKey);
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    @EventListener
+    public void onClearCache(ClearCacheEvent event) {
+        invalidate();
+    }
+
+    @EventListener
+    public void onCustomFieldUpdated(CustomFieldUpdatedEvent event) {
+        invalidate();
+    }
+
+    @EventListener
+    public void onCustomFieldDeleted(CustomFieldDeletedEvent event) {
+        invalidate();
+    }
+
+    @EventListener
+    public void onFieldConfigSchemeCreated(FieldConfigSchemeCreatedEvent event) {
+        invalidate();
+    }
+
+    @EventListener
+    public void onFieldConfigSchemeUpdated(FieldConfigSchemeUpdatedEvent event) {
+        invalidate();
+    }
+
+    @EventListener
+    public void onFieldConfigSchemeDeleted(FieldConfigSchemeDeletedEvent event) {
+        invalidate();
+    }
+
+    private static Map<String, FieldConfig> buildProjectConfigs(CustomField customField) {
+        Map<String, FieldConfig> configByProjectKey = new HashMap<>();
+        List<FieldConfigScheme> schemes = customField.getConfigurationSchemes();
+        if (schemes != null) {
+            for (FieldConfigScheme scheme : schemes) {
+                MultiMap configs = scheme.getConfigsByConfig();
+                if (configs == null || configs.isEmpty()) {
+                    continue;
+                }
+                FieldConfig fieldConfig = (FieldConfig) configs.keySet().iterator().next();
+                for (Project project : scheme.getAssociatedProjectObjects()) {
+                    configByProjectKey.putIfAbsent(project.getKey(), fieldConfig);
+                }
+            }
+        }
+        return configByProjectKey;
+    }
+
+    private static final class Entry {
+        private final CustomField customField;
+        private final Map<String, FieldConfig> configByProjectKey;
+        private final long builtAtNanos = System.nanoTime();
+
+        private Entry(CustomField customField, Map<String, FieldConfig> configByProjectKey) {
+            this.customField = customField;
+            this.configByProjectKey = configByProjectKey;
+        }
+    }
+}
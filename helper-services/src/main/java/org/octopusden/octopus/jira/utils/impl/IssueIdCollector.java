@@ -0,0 +1,46 @@
+package org.octopusden.octopus.jira.utils.impl;
+
+import com.atlassian.jira.issue.index.DocumentConstants;
+import com.atlassian.jira.issue.statistics.util.FieldDocumentHitCollector;
+import org.apache.lucene.document.Document;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Collects issue ids straight from the index documents without building {@link com.atlassian.jira.issue.Issue} objects.
+ */
+class IssueIdCollector extends FieldDocumentHitCollector {
+
+    private static final Set<String> FIELDS_TO_LOAD = Collections.singleton(DocumentConstants.ISSUE_ID);
+
+    private long[] ids = new long[64];
+    private int size;
+
+    @Override
+    public Set<String> getFieldsToLoad() {
+        return FIELDS_TO_LOAD;
+    }
+
+    @Override
+    public void collect(Document document) {
+        String id = document.get(DocumentConstants.ISSUE_ID);
+        if (id == null) {
+            return;
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size << 1);
+        }
+        ids[size++] = Long.parseLong(id);
+    }
+
+    /**
+     * @return collected ids in ascending order
+     */
+    long[] getSortedIds() {
+        long[] result = Arrays.copyOf(ids, size);
+        Arrays.sort(result);
+        return result;
+    }
+}
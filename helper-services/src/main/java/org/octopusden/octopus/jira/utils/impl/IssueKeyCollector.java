@@ -0,0 +1,41 @@
+package org.octopusden.octopus.jira.utils.impl;
+
+import com.atlassian.jira.issue.index.DocumentConstants;
+import com.atlassian.jira.issue.statistics.util.FieldDocumentHitCollector;
+import org.apache.lucene.document.Document;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Collects issue keys straight from the index documents without building {@link com.atlassian.jira.issue.Issue} objects.
+ */
+class IssueKeyCollector extends FieldDocumentHitCollector {
+
+    private static final Set<String> FIELDS_TO_LOAD = Collections.singleton(DocumentConstants.ISSUE_KEY);
+
+    private final List<String> keys = new ArrayList<>();
+
+    @Override
+    public Set<String> getFieldsToLoad() {
+        return FIELDS_TO_LOAD;
+    }
+
+    @Override
+    public void collect(Document document) {
+        String key = document.get(DocumentConstants.ISSUE_KEY);
+        if (key != null) {
+            keys.add(key);
+        }
+    }
+
+    /**
+     * @return collected keys ordered by project key and issue number
+     */
+    List<String> getSortedKeys() {
+        keys.sort(IssueKeyComparator.INSTANCE);
+        return keys;
+    }
+}
@@ -0,0 +1,37 @@
+package org.octopusden.octopus.jira.utils.impl;
+
+import java.io.Serializable;
+import java.util.Comparator;
+
+/**
+ * Orders issue keys the way Jira orders {@code issuekey ASC}: by project key, then by issue number.
+ * Keys without a numeric suffix are compared as plain strings.
+ */
+final class IssueKeyComparator implements Comparator<String>, Serializable {
+
+    static final IssueKeyComparator INSTANCE = new IssueKeyComparator();
+
+    private static final long serialVersionUID = 1L;
+
+    private IssueKeyComparator() {
+    }
+
+    @Override
+    public int compare(String left, String right) {
+        int leftSeparator = left.lastIndexOf('-');
+        int rightSeparator = right.lastIndexOf('-');
+        if (leftSeparator < 0 || rightSeparator < 0) {
+            return left.compareTo(right);
+        }
+        int projectComparison = left.substring(0, leftSeparator).compareTo(right.substring(0, rightSeparator));
+        if (projectComparison != 0) {
+            return projectComparison;
+        }
+        String leftNumber = left.substring(leftSeparator + 1);
+        String rightNumber = right.substring(rightSeparator + 1);
+        if (leftNumber.length() != rightNumber.length()) {
+            return leftNumber.length() - rightNumber.length();
+        }
+        return leftNumber.compareTo(rightNumber);
+    }
+}
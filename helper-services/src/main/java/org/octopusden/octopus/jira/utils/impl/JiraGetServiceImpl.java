@@ -1,7 +1,10 @@
 package org.octopusden.octopus.jira.utils.impl;
 
+import com.atlassian.event.api.EventListener;
+import com.atlassian.event.api.EventPublisher;
 import com.atlassian.jira.bc.project.version.VersionService;
 import com.atlassian.jira.config.IssueTypeManager;
+import com.atlassian.jira.event.ClearCacheEvent;
 import com.atlassian.jira.issue.issuetype.IssueType;
 import com.atlassian.jira.issue.link.IssueLinkType;
 import com.atlassian.jira.issue.link.IssueLinkTypeManager;
@@ -14,10 +17,9 @@ import org.octopusden.octopus.jira.utils.JiraGetService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collection;
 import java.util.Optional;
 
-public class JiraGetServiceImpl implements JiraGetService {
+public class JiraGetServiceImpl implements JiraGetService, AutoCloseable {
 
     static final Logger LOG = LoggerFactory.getLogger(JiraCreateServiceImpl.class);
 
@@ -27,40 +29,72 @@ public class JiraGetServiceImpl implements JiraGetService {
     private final UserManager userManager;
     private final VersionService versionService;
     private final ProjectManager projectManager;
+    private final NamedObjectIndex<IssueType> issueTypeIndex;
+    private final NamedObjectIndex<IssueLinkType> issueLinkTypeIndex;
+    private final EventPublisher eventPublisher;
 
     public JiraGetServiceImpl(IssueTypeManager issueTypeManager, IssueLinkTypeManager issueLinkTypeManager, JiraAuthenticationContext jiraAuthenticationContext,
                               UserManager userManager, VersionService versionService, ProjectManager projectManager) {
+        this(issueTypeManager, issueLinkTypeManager, jiraAuthenticationContext, userManager, versionService, projectManager, null);
+    }
+
+    private JiraGetServiceImpl(IssueTypeManager issueTypeManager, IssueLinkTypeManager issueLinkTypeManager, JiraAuthenticationContext jiraAuthenticationContext,
+                               UserManager userManager, VersionService versionService, ProjectManager projectManager, EventPublisher eventPublisher) {
         this.issueTypeManager = issueTypeManager;
         this.issueLinkTypeManager = issueLinkTypeManager;
         this.jiraAuthenticationContext = jiraAuthenticationContext;
         this.userManager = userManager;
         this.versionService = versionService;
         this.projectManager = projectManager;
+        this.issueTypeIndex = new NamedObjectIndex<>(issueTypeManager::getIssueTypes, IssueType::getName,
+                issueType -> issueTypeManager.getIssueType(issueType.getId()));
+        this.issueLinkTypeIndex = new NamedObjectIndex<>(issueLinkTypeManager::getIssueLinkTypes, IssueLinkType::getName,
+                issueLinkType -> issueLinkTypeManager.getIssueLinkType(issueLinkType.getId()));
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Creates the service and subscribes it to Jira cache clearing, see {@link #onClearCache(ClearCacheEvent)};
+     * call {@link #close()} to unsubscribe it.
+     */
+    public static JiraGetServiceImpl create(IssueTypeManager issueTypeManager, IssueLinkTypeManager issueLinkTypeManager,
+                                            JiraAuthenticationContext jiraAuthenticationContext, UserManager userManager,
+                                            VersionService versionService, ProjectManager projectManager, EventPublisher eventPublisher) {
+        JiraGetServiceImpl service = new JiraGetServiceImpl(issueTypeManager, issueLinkTypeManager, jiraAuthenticationContext,
+                userManager, versionService, projectManager, eventPublisher);
+        eventPublisher.register(service);
+        return service;
     }
 
 
     @Override
     public Optional<IssueType> getIssueTypeByName(String name) {
-        Collection<IssueType> issueTypes = issueTypeManager.getIssueTypes();
-        IssueType resIssueType = null;
-        for (IssueType issueType : issueTypes) {
-            if (issueType.getName().equalsIgnoreCase(name)) {
-                resIssueType = issueType;
-            }
-        }
-        return Optional.ofNullable(resIssueType);
+        return issueTypeIndex.find(name);
     }
 
     @Override
     public Optional<IssueLinkType> getIssueLinkTypeByName(String name) {
-        Collection<IssueLinkType> issueLinkTypes = issueLinkTypeManager.getIssueLinkTypes();
-        IssueLinkType resIssueLinkType = null;
-        for (IssueLinkType issueLinkType : issueLinkTypes) {
-            if (issueLinkType.getName().equalsIgnoreCase(name)) {
-                resIssueLinkType = issueLinkType;
-            }
+        return issueLinkTypeIndex.find(name);
+    }
+
+    /**
+     * Drops issue type and link type indexes, they are rebuilt on next lookup.
+     */
+    public void invalidateCaches() {
+        issueTypeIndex.invalidate();
+        issueLinkTypeIndex.invalidate();
+    }
+
+    @EventListener
+    public void onClearCache(ClearCacheEvent event) {
+        invalidateCaches();
+    }
+
+    @Override
+    public void close() {
+        if (eventPublisher != null) {
+            eventPublisher.unregister(this);
         }
-        return Optional.ofNullable(resIssueLinkType);
     }
 
     @Override
@@ -1,22 +1,19 @@
 package org.octopusden.octopus.jira.utils.impl;
 
+import com.atlassian.event.api.EventPublisher;
 import com.atlassian.jira.bc.issue.search.SearchService;
 import com.atlassian.jira.bc.project.version.VersionService;
 import com.atlassian.jira.issue.CustomFieldManager;
 import com.atlassian.jira.issue.Issue;
 import com.atlassian.jira.issue.IssueManager;
 import com.atlassian.jira.issue.fields.config.FieldConfig;
-import com.atlassian.jira.issue.fields.config.FieldConfigScheme;
 import com.atlassian.jira.issue.issuetype.IssueType;
 import com.atlassian.jira.issue.link.IssueLinkType;
-import com.atlassian.jira.issue.search.SearchException;
-import com.atlassian.jira.issue.search.SearchResults;
 import com.atlassian.jira.jql.builder.JqlQueryBuilder;
 import com.atlassian.jira.project.Project;
 import com.atlassian.jira.project.version.Version;
 import com.atlassian.jira.user.ApplicationUser;
 import com.atlassian.jira.util.ErrorCollection;
-import com.atlassian.jira.web.bean.PagerFilter;
 import com.atlassian.query.Query;
 import com.atlassian.query.order.SortOrder;
 import com.google.common.collect.Lists;
@@ -24,11 +21,11 @@ import org.octopusden.octopus.jira.enums.IssueTypeEnum;
 import org.octopusden.octopus.jira.enums.JiraCustomField;
 import org.octopusden.octopus.jira.exception.JiraApplicationException;
 import org.octopusden.octopus.jira.exception.JiraObjectNotFoundException;
-import org.octopusden.octopus.jira.exception.JiraSearchEngineException;
+import org.octopusden.octopus.jira.utils.CustomFieldValues;
 import org.octopusden.octopus.jira.utils.IJiraHelper;
 import org.octopusden.octopus.jira.utils.JiraGetService;
 import org.octopusden.octopus.jira.utils.JiraSearchService;
-import org.apache.commons.collections.MultiMap;
+import org.octopusden.octopus.releng.dto.Language;
 import org.apache.commons.lang.Validate;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -37,6 +34,7 @@ import org.slf4j.LoggerFactory;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 public class JiraHelper implements IJiraHelper {
 
@@ -46,19 +44,49 @@ public class JiraHelper implements IJiraHelper {
     private static final Logger LOG = LoggerFactory.getLogger(JiraHelper.class);
     private static final Pattern CRD_BUILD_PATTERN = Pattern.compile("(\\d\\d\\.\\d\\d\\.\\d\\d\\.\\d\\d)[-#]\\d+");
     private static final long TIMEOUT_MS = 60000;
+    private static final Set<JiraCustomField> BACKPORTING_PARENT_FIELDS = EnumSet.of(JiraCustomField.CLIENT_RELEASE_NOTES);
     private final JiraGetService jiraGetService;
     private final JiraSearchService jiraSearchService;
 
     private final IssueManager issueManager;
     private final CustomFieldManager customFieldManager;
     private final SearchService searchService;
-
+    private final CustomFieldRegistry customFieldRegistry;
+    private final FieldConfigIndex fieldConfigIndex = new FieldConfigIndex();
+
+    /**
+     * Creates the helper without configuration event wiring: a renamed or deleted custom field keeps resolving to the
+     * former field for up to {@link CustomFieldRegistry#UNTRACKED_TTL_MILLIS} and field configs are kept for
+     * {@link FieldConfigIndex#DEFAULT_TTL_MILLIS}. Prefer the constructor taking the {@link EventPublisher}.
+     */
     public JiraHelper(JiraGetService jiraGetService, JiraSearchService jiraSearchService, IssueManager issueManager, CustomFieldManager customFieldManager, SearchService searchService) {
+        this(jiraGetService, jiraSearchService, issueManager, customFieldManager, searchService,
+                new CustomFieldRegistry(customFieldManager, CustomFieldRegistry.UNTRACKED_TTL_MILLIS));
+    }
+
+    /**
+     * Creates the helper with custom field resolution and field config index invalidated by custom field configuration events.
+     */
+    public JiraHelper(JiraGetService jiraGetService, JiraSearchService jiraSearchService, IssueManager issueManager, CustomFieldManager customFieldManager, SearchService searchService,
+                      EventPublisher eventPublisher) {
+        this(jiraGetService, jiraSearchService, issueManager, customFieldManager, searchService, new CustomFieldRegistry(customFieldManager));
+        eventPublisher.register(customFieldRegistry);
+        eventPublisher.register(fieldConfigIndex);
+        customFieldRegistry.setTrackConfigurationChanges(true);
+    }
+
+    private JiraHelper(JiraGetService jiraGetService, JiraSearchService jiraSearchService, IssueManager issueManager, CustomFieldManager customFieldManager, SearchService searchService,
+                       CustomFieldRegistry customFieldRegistry) {
         this.jiraGetService = jiraGetService;
         this.jiraSearchService = jiraSearchService;
         this.issueManager = issueManager;
         this.customFieldManager = customFieldManager;
         this.searchService = searchService;
+        this.customFieldRegistry = customFieldRegistry;
+    }
+
+    public CustomFieldRegistry getCustomFieldRegistry() {
+        return customFieldRegistry;
     }
 
     @Override
@@ -103,7 +131,7 @@ public class JiraHelper implements IJiraHelper {
 
     @Override
     public Object getCustomFieldValue(Issue issue, JiraCustomField owCustomField) {
-        com.atlassian.jira.issue.fields.CustomField customField = getCustomField(owCustomField.getName());
+        com.atlassian.jira.issue.fields.CustomField customField = customFieldRegistry.get(owCustomField).getCustomField();
         if (customField == null) {
             throw new JiraApplicationException("Unable to find custom field " + owCustomField.getName() + ". Configure JIRA Instance");
         }
@@ -123,21 +151,7 @@ public class JiraHelper implements IJiraHelper {
     @Override
     public FieldConfig getFieldConfigSafe(com.atlassian.jira.issue.fields.CustomField customField, String projectKey) {
         Validate.notNull(customField, "custom field can't be null");
-        List<FieldConfigScheme> schemes = customField.getConfigurationSchemes();
-        if (schemes != null && !schemes.isEmpty()) {
-            for (FieldConfigScheme scheme : schemes) {
-                List<Project> associatedProjects = scheme.getAssociatedProjectObjects();
-                for (Project project : associatedProjects) {
-                    if (project.getKey().equals(projectKey)) {
-                        MultiMap configs = scheme.getConfigsByConfig();
-                        if (configs != null && !configs.isEmpty()) {
-                            return (FieldConfig) configs.keySet().iterator().next();
-                        }
-                    }
-                }
-            }
-        }
-        return null;
+        return fieldConfigIndex.get(customField, projectKey);
     }
 
     @Override
@@ -181,7 +195,7 @@ public class JiraHelper implements IJiraHelper {
 
     @Override
     public com.atlassian.jira.issue.fields.CustomField getCustomFieldSafe(String fieldName) {
-        com.atlassian.jira.issue.fields.CustomField customField = customFieldManager.getCustomFieldObjectByName(fieldName);
+        com.atlassian.jira.issue.fields.CustomField customField = getCustomField(fieldName);
         if (customField == null) {
             throw new JiraApplicationException(String.format("Custom field '%s' not found. Configure Jira Instance", fieldName));
         }
@@ -190,12 +204,12 @@ public class JiraHelper implements IJiraHelper {
 
     @Override
     public com.atlassian.jira.issue.fields.CustomField getCustomField(String fieldName) {
-        return customFieldManager.getCustomFieldObjectByName(fieldName);
+        return customFieldRegistry.get(fieldName).getCustomField();
     }
 
     @Override
     public boolean customFieldExists(String fieldName) {
-        return customFieldManager.getCustomFieldObjectByName(fieldName) != null;
+        return customFieldRegistry.get(fieldName).exists();
     }
 
     @Override
@@ -229,6 +243,81 @@ public class JiraHelper implements IJiraHelper {
     }
 
 
+    @Override
+    public CustomFieldValues getCustomFieldValues(Collection<Issue> issues, Set<JiraCustomField> customFields) {
+        return getCustomFieldValues(issues, customFields, Language.EN);
+    }
+
+    @Override
+    public CustomFieldValues getCustomFieldValues(Collection<Issue> issues, Set<JiraCustomField> customFields, Language language) {
+        Validate.notNull(issues);
+        Validate.notNull(customFields);
+        List<Issue> issueList = new ArrayList<>(issues);
+        EnumMap<JiraCustomField, com.atlassian.jira.issue.fields.CustomField> resolvedFields = new EnumMap<>(JiraCustomField.class);
+        EnumMap<JiraCustomField, Object[]> values = new EnumMap<>(JiraCustomField.class);
+        for (JiraCustomField field : customFields) {
+            com.atlassian.jira.issue.fields.CustomField customField = customFieldRegistry.get(field, language).getCustomField();
+            if (customField != null) {
+                resolvedFields.put(field, customField);
+                values.put(field, new Object[issueList.size()]);
+            }
+        }
+        boolean redirectToParent = !Collections.disjoint(resolvedFields.keySet(), BACKPORTING_PARENT_FIELDS);
+        Map<Long, Issue> parents = redirectToParent ? loadBackportingParents(issueList) : Collections.emptyMap();
+        Map<Long, Map<JiraCustomField, Object>> parentValues = new HashMap<>();
+        for (int i = 0; i < issueList.size(); i++) {
+            Issue issue = issueList.get(i);
+            Issue parent = isBackportingWithParent(issue) ? parents.get(issue.getParentId()) : null;
+            // A Backporting issue whose parent can't be loaded keeps its own values
+            Map<JiraCustomField, Object> parentFieldValues = parent != null
+                    ? parentValues.computeIfAbsent(parent.getId(), parentId -> readParentValues(parent, resolvedFields))
+                    : null;
+            for (Map.Entry<JiraCustomField, com.atlassian.jira.issue.fields.CustomField> field : resolvedFields.entrySet()) {
+                values.get(field.getKey())[i] = parentFieldValues != null && BACKPORTING_PARENT_FIELDS.contains(field.getKey())
+                        ? parentFieldValues.get(field.getKey())
+                        : issue.getCustomFieldValue(field.getValue());
+            }
+        }
+        return new CustomFieldValues(issueList, values);
+    }
+
+    private static boolean isBackportingWithParent(Issue issue) {
+        return issue.getParentId() != null && issue.getIssueType().getName().equals(IssueTypeEnum.BACKPORTING.getName());
+    }
+
+    /**
+     * Loads the distinct parents of the Backporting issues with one {@link IssueManager#getIssueObjects(Collection)} call.
+     */
+    private Map<Long, Issue> loadBackportingParents(List<Issue> issues) {
+        Set<Long> parentIds = new LinkedHashSet<>();
+        for (Issue issue : issues) {
+            if (isBackportingWithParent(issue)) {
+                parentIds.add(issue.getParentId());
+            }
+        }
+        if (parentIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Long, Issue> parents = new HashMap<>(parentIds.size() * 4 / 3 + 1);
+        for (Issue parent : issueManager.getIssueObjects(parentIds)) {
+            if (parent != null) {
+                parents.put(parent.getId(), parent);
+            }
+        }
+        return parents;
+    }
+
+    private static Map<JiraCustomField, Object> readParentValues(Issue parent, Map<JiraCustomField, com.atlassian.jira.issue.fields.CustomField> resolvedFields) {
+        Map<JiraCustomField, Object> parentFieldValues = new EnumMap<>(JiraCustomField.class);
+        for (JiraCustomField field : BACKPORTING_PARENT_FIELDS) {
+            com.atlassian.jira.issue.fields.CustomField customField = resolvedFields.get(field);
+            if (customField != null) {
+                parentFieldValues.put(field, parent.getCustomFieldValue(customField));
+            }
+        }
+        return parentFieldValues;
+    }
+
     @Override
     public List<Issue> getIssueWithPartialReopen(ApplicationUser user, Project project, List<Version> versions) {
         return getIssuesWithPartialReopenUpdatedAfterDate(user, project, versions, null);
@@ -239,11 +328,22 @@ public class JiraHelper implements IJiraHelper {
         return getIssuesWithVersionsPickerCustomFieldUpdatedAfterDate(JiraCustomField.APPROVED_FOR_RELEASE.getName(), user, project, versions, date);
     }
 
+    @Override
+    public List<String> getIssueKeysWithPartialReopenUpdatedAfterDate(ApplicationUser user, Project project, List<Version> versions, Date date) {
+        Query query = getVersionsPickerCustomFieldUpdatedAfterDateQuery(JiraCustomField.APPROVED_FOR_RELEASE.getName(), project, versions, date);
+        return query != null ? jiraSearchService.getIssueKeysFromQuery(user, query) : Collections.emptyList();
+    }
+
     private List<Issue> getIssuesWithVersionsPickerCustomFieldUpdatedAfterDate(String customFieldName, ApplicationUser user, Project project, List<Version> versions, Date date) {
-        if (!customFieldExists(customFieldName)) {
-            return Collections.emptyList();
+        Query query = getVersionsPickerCustomFieldUpdatedAfterDateQuery(customFieldName, project, versions, date);
+        return query != null ? jiraSearchService.getIssuesFromQuery(user, query) : Collections.emptyList();
+    }
+
+    private Query getVersionsPickerCustomFieldUpdatedAfterDateQuery(String customFieldName, Project project, List<Version> versions, Date date) {
+        com.atlassian.jira.issue.fields.CustomField customField = getCustomField(customFieldName);
+        if (customField == null) {
+            return null;
         }
-        com.atlassian.jira.issue.fields.CustomField customField = getCustomFieldSafe(customFieldName);
         JqlQueryBuilder builder = JqlQueryBuilder.newBuilder();
 
 
@@ -251,10 +351,7 @@ public class JiraHelper implements IJiraHelper {
         if (date != null) {
             builder.where().and().updatedAfter(date);
         }
-        Query query = builder.orderBy().issueKey(SortOrder.ASC).endOrderBy().buildQuery();
-        return jiraSearchService.getIssuesFromQuery(user, query);
-
-
+        return builder.orderBy().issueKey(SortOrder.ASC).endOrderBy().buildQuery();
     }
 
     @Override
@@ -275,15 +372,11 @@ public class JiraHelper implements IJiraHelper {
 
     @Override
     public List<Issue> getIssuesFromQuery(ApplicationUser user, Query query) {
-        try {
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("Executing " + searchService.getJqlString(query));
-            }
-            SearchResults<Issue> searchResults = searchService.search(user, query, PagerFilter.getUnlimitedFilter());
-            return searchResults.getResults();
-        } catch (SearchException e) {
-            throw new JiraSearchEngineException("Error while searching issues for project %s version %s", e);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Executing " + searchService.getJqlString(query));
         }
+        return PagedIssueIterator.stream(searchService, user, query, JiraSearchServiceImpl.DEFAULT_PAGE_SIZE,
+                "Error while searching issues from query").collect(Collectors.toList());
     }
 
     @Override
@@ -1,11 +1,14 @@
 package org.octopusden.octopus.jira.utils.impl;
 
 import com.atlassian.jira.bc.issue.search.SearchService;
+import com.atlassian.jira.component.ComponentAccessor;
 import com.atlassian.jira.issue.Issue;
 import com.atlassian.jira.issue.fields.CustomField;
 import com.atlassian.jira.issue.issuetype.IssueType;
 import com.atlassian.jira.issue.search.SearchException;
-import com.atlassian.jira.issue.search.SearchResults;
+import com.atlassian.jira.issue.search.SearchProvider;
+import com.atlassian.jira.issue.search.SearchQuery;
+import com.atlassian.jira.issue.statistics.util.FieldDocumentHitCollector;
 import com.atlassian.jira.jql.builder.JqlClauseBuilder;
 import com.atlassian.jira.jql.builder.JqlQueryBuilder;
 import com.atlassian.jira.project.Project;
@@ -13,7 +16,7 @@ import com.atlassian.jira.project.version.Version;
 import com.atlassian.jira.security.JiraAuthenticationContext;
 import com.atlassian.jira.user.ApplicationUser;
 import com.atlassian.jira.util.MessageSet;
-import com.atlassian.jira.web.bean.PagerFilter;
+import com.atlassian.jira.util.thread.JiraThreadLocalUtil;
 import com.atlassian.query.Query;
 import com.atlassian.query.order.SortOrder;
 import org.octopusden.octopus.jira.exception.JiraSearchEngineException;
@@ -24,45 +27,129 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class JiraSearchServiceImpl implements JiraSearchService {
     public static final String DONE = "Done";
     public static final String UNRESOLVED = "Unresolved";
+    public static final int DEFAULT_PAGE_SIZE = 500;
     static final Logger LOG = LoggerFactory.getLogger(JiraSearchServiceImpl.class);
+    private static final org.apache.log4j.Logger THREAD_LOCAL_LOG = org.apache.log4j.Logger.getLogger(JiraSearchServiceImpl.class);
     private final JiraAuthenticationContext jiraAuthenticationContext;
     private final SearchService searchService;
+    private final int pageSize;
+    private volatile SearchProvider searchProvider;
+    private volatile JiraThreadLocalUtil jiraThreadLocalUtil;
 
     public JiraSearchServiceImpl(JiraAuthenticationContext jiraAuthenticationContext, SearchService searchService) {
+        this(jiraAuthenticationContext, searchService, DEFAULT_PAGE_SIZE);
+    }
+
+    public JiraSearchServiceImpl(JiraAuthenticationContext jiraAuthenticationContext, SearchService searchService, int pageSize) {
+        this(jiraAuthenticationContext, searchService, null, pageSize);
+    }
+
+    /**
+     * @param searchProvider index search provider used by id and key only searches,
+     *                       resolved through {@link ComponentAccessor} on first use if null
+     */
+    public JiraSearchServiceImpl(JiraAuthenticationContext jiraAuthenticationContext, SearchService searchService,
+                                 SearchProvider searchProvider, int pageSize) {
+        this(jiraAuthenticationContext, searchService, searchProvider, null, pageSize);
+    }
+
+    /**
+     * @param searchProvider      index search provider used by id and key only searches,
+     *                            resolved through {@link ComponentAccessor} on first use if null
+     * @param jiraThreadLocalUtil sets up and cleans the Jira thread locals of the threads running shard searches,
+     *                            resolved through {@link ComponentAccessor} on first use if null
+     */
+    public JiraSearchServiceImpl(JiraAuthenticationContext jiraAuthenticationContext, SearchService searchService,
+                                 SearchProvider searchProvider, JiraThreadLocalUtil jiraThreadLocalUtil, int pageSize) {
+        Validate.isTrue(pageSize > 0, "pageSize must be positive");
         this.jiraAuthenticationContext = jiraAuthenticationContext;
         this.searchService = searchService;
+        this.searchProvider = searchProvider;
+        this.jiraThreadLocalUtil = jiraThreadLocalUtil;
+        this.pageSize = pageSize;
     }
 
 
     @Override
     public List<Issue> findIssues(ApplicationUser user, Project project, Version version) {
-        JqlQueryBuilder builder = JqlQueryBuilder.newBuilder();
-        addVersionResolvedCondition(builder.where().project(project.getId())).and().fixVersion(version.getId());
-        Query query = builder.orderBy().issueKey(SortOrder.ASC).endOrderBy().buildQuery();
-
-        return getIssuesFromQuery(user, query);
+        return getIssuesFromQuery(user, buildFixVersionQuery(project, version));
     }
 
     @Override
     public List<Issue> findIssues(ApplicationUser user, Project project, List<Version> versions) {
-        JqlQueryBuilder builder = JqlQueryBuilder.newBuilder();
+        return getIssuesFromQuery(user, buildFixVersionsQuery(project, versions));
+    }
 
-        ArrayList<Long> versionIDs = new ArrayList<>();
-        for (Version version : versions) {
-            versionIDs.add(version.getId());
+    @Override
+    public List<Issue> findIssues(ApplicationUser user, Project project, List<Version> versions, int shardSize, Executor executor) {
+        Validate.isTrue(shardSize > 0, "shardSize must be positive");
+        Validate.notNull(executor, "executor can't be null");
+        if (versions.size() <= shardSize) {
+            return findIssues(user, project, versions);
         }
-        addVersionResolvedCondition(builder.where().project(project.getId())).and().fixVersion().in(versionIDs.toArray(new Long[versionIDs.size()]));
-        Query query = builder.orderBy().issueKey(SortOrder.ASC).endOrderBy().buildQuery();
+        List<Query> shardQueries = new ArrayList<>();
+        for (int from = 0; from < versions.size(); from += shardSize) {
+            shardQueries.add(buildFixVersionsQuery(project, versions.subList(from, Math.min(from + shardSize, versions.size()))));
+        }
+        return searchShards(user, shardQueries, executor);
+    }
 
-        return getIssuesFromQuery(user, query);
+    /**
+     * Searches every query on the executor and merges the results by issue key. The first failing shard fails the
+     * search at once: shards not started yet are dropped, running ones stop before requesting their next page.
+     */
+    List<Issue> searchShards(ApplicationUser user, List<Query> queries, Executor executor) {
+        AtomicBoolean failed = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<CompletableFuture<List<Issue>>> shardSearches = new ArrayList<>(queries.size());
+        for (Query query : queries) {
+            shardSearches.add(CompletableFuture.supplyAsync(() -> runAs(user, () -> searchShard(user, query, failed)), executor));
+        }
+        // Completes once the failure, if any, is recorded and the other shards are cancelled
+        List<CompletableFuture<List<Issue>>> observedSearches = new ArrayList<>(shardSearches.size());
+        for (CompletableFuture<List<Issue>> shardSearch : shardSearches) {
+            observedSearches.add(shardSearch.whenComplete((issues, error) -> {
+                if (error != null && failure.compareAndSet(null, unwrap(error))) {
+                    failed.set(true);
+                    shardSearches.forEach(other -> other.cancel(false));
+                }
+            }));
+        }
+        try {
+            CompletableFuture.allOf(observedSearches.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException | CancellationException e) {
+            Throwable cause = failure.get() != null ? failure.get() : unwrap(e);
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new JiraSearchEngineException("Jira Search Service Failed", cause);
+        }
+        List<List<Issue>> shardResults = new ArrayList<>(shardSearches.size());
+        for (CompletableFuture<List<Issue>> shardSearch : shardSearches) {
+            shardResults.add(shardSearch.join());
+        }
+        return mergeByIssueKey(shardResults);
     }
 
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
 
     @Override
     public List<Issue> findReleasedIssues(Version version) {
@@ -74,15 +161,7 @@ public class JiraSearchServiceImpl implements JiraSearchService {
 
     @Override
     public List<Issue> findIssues(ApplicationUser user, Project project, Version version, IssueType issueType, boolean isReleased) {
-        Validate.notNull(version, "version can't be null");
-        Validate.notNull(issueType, "issueType can't be null");
-
-        JqlQueryBuilder builder = JqlQueryBuilder.newBuilder();
-        builder.where().project(project.getId()).and().issueType(issueType.getId()).and().fixVersion(version.getId());
-        builder.where().and().resolution(isReleased ? DONE : UNRESOLVED);
-        Query query = builder.orderBy().issueKey(SortOrder.ASC).endOrderBy().buildQuery();
-
-        return getIssuesFromQuery(user, query);
+        return getIssuesFromQuery(user, buildIssueTypeQuery(project, version, issueType, isReleased));
     }
 
     @Override
@@ -90,6 +169,46 @@ public class JiraSearchServiceImpl implements JiraSearchService {
         return findIssues(user, version.getProject(), version, issueType, isReleased);
     }
 
+    @Override
+    public long[] findIssueIds(ApplicationUser user, Project project, Version version) {
+        return getIssueIdsFromQuery(user, buildFixVersionQuery(project, version));
+    }
+
+    @Override
+    public long[] findIssueIds(ApplicationUser user, Project project, List<Version> versions) {
+        return getIssueIdsFromQuery(user, buildFixVersionsQuery(project, versions));
+    }
+
+    @Override
+    public long[] findIssueIds(ApplicationUser user, Project project, Version version, IssueType issueType, boolean isReleased) {
+        return getIssueIdsFromQuery(user, buildIssueTypeQuery(project, version, issueType, isReleased));
+    }
+
+    @Override
+    public long[] findIssueIds(ApplicationUser user, Version version, IssueType issueType, boolean isReleased) {
+        return findIssueIds(user, version.getProject(), version, issueType, isReleased);
+    }
+
+    @Override
+    public List<String> findIssueKeys(ApplicationUser user, Project project, Version version) {
+        return getIssueKeysFromQuery(user, buildFixVersionQuery(project, version));
+    }
+
+    @Override
+    public List<String> findIssueKeys(ApplicationUser user, Project project, List<Version> versions) {
+        return getIssueKeysFromQuery(user, buildFixVersionsQuery(project, versions));
+    }
+
+    @Override
+    public List<String> findIssueKeys(ApplicationUser user, Project project, Version version, IssueType issueType, boolean isReleased) {
+        return getIssueKeysFromQuery(user, buildIssueTypeQuery(project, version, issueType, isReleased));
+    }
+
+    @Override
+    public List<String> findIssueKeys(ApplicationUser user, Version version, IssueType issueType, boolean isReleased) {
+        return findIssueKeys(user, version.getProject(), version, issueType, isReleased);
+    }
+
     @Override
     public List<Issue> findIssuesByCustomFieldValue(ApplicationUser user, CustomField cf, String value) {
         return new ArrayList<>(findIssuesByCustomFieldValue(user, cf, value, false));
@@ -98,32 +217,188 @@ public class JiraSearchServiceImpl implements JiraSearchService {
     @Override
     public Collection<Issue> findIssuesByCustomFieldValue(ApplicationUser user, CustomField cf, String searchFieldValue, boolean equalComparison) {
         final long cfId = cf.getIdAsLong();
+        if (equalComparison) {
+            return findIssuesByExactCustomFieldValue(user, cf, searchFieldValue);
+        }
         final Query query = JqlQueryBuilder.newBuilder().where().customField(cfId).like(searchFieldValue).buildQuery();
-        final MessageSet messageSet = searchService.validateQuery(user, query);
-        checkMessageSet(messageSet, query, user);
-        final List<Issue> issues = getIssuesFromQuery(user, query);
-        if (!equalComparison) {
-            return issues;
+        return getIssuesFromQuery(user, query);
+    }
+
+    /**
+     * Exact match search. Fields supporting the JQL equals operator are narrowed by the index with {@code cf = value},
+     * other fields (e.g. text fields) fall back to {@code cf ~ value}. In both cases candidates are streamed page by page
+     * and only issues whose field value equals the searched value are kept.
+     */
+    private List<Issue> findIssuesByExactCustomFieldValue(ApplicationUser user, CustomField cf, String searchFieldValue) {
+        final long cfId = cf.getIdAsLong();
+        Query query = JqlQueryBuilder.newBuilder().where().customField(cfId).eq(searchFieldValue).buildQuery();
+        MessageSet messageSet = searchService.validateQuery(user, query);
+        if (messageSet.hasAnyErrors()) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Custom field " + cf.getFieldName() + " does not support equals search, using like search");
+            }
+            query = JqlQueryBuilder.newBuilder().where().customField(cfId).like(searchFieldValue).buildQuery();
+            messageSet = searchService.validateQuery(user, query);
+        }
+        return streamValidatedQuery(user, query, messageSet)
+                .filter(issue -> customFieldValueEquals(issue.getCustomFieldValue(cf), searchFieldValue))
+                .collect(Collectors.toList());
+    }
+
+    static boolean customFieldValueEquals(Object fieldValue, String searchFieldValue) {
+        return fieldValue != null && fieldValue.equals(searchFieldValue);
+    }
+
+    static Query buildFixVersionQuery(Project project, Version version) {
+        JqlQueryBuilder builder = JqlQueryBuilder.newBuilder();
+        addVersionResolvedCondition(builder.where().project(project.getId())).and().fixVersion(version.getId());
+        return builder.orderBy().issueKey(SortOrder.ASC).endOrderBy().buildQuery();
+    }
+
+    static Query buildFixVersionsQuery(Project project, List<Version> versions) {
+        JqlQueryBuilder builder = JqlQueryBuilder.newBuilder();
+
+        ArrayList<Long> versionIDs = new ArrayList<>();
+        for (Version version : versions) {
+            versionIDs.add(version.getId());
+        }
+        addVersionResolvedCondition(builder.where().project(project.getId())).and().fixVersion().in(versionIDs.toArray(new Long[versionIDs.size()]));
+        return builder.orderBy().issueKey(SortOrder.ASC).endOrderBy().buildQuery();
+    }
+
+    static Query buildIssueTypeQuery(Project project, Version version, IssueType issueType, boolean isReleased) {
+        Validate.notNull(version, "version can't be null");
+        Validate.notNull(issueType, "issueType can't be null");
+
+        JqlQueryBuilder builder = JqlQueryBuilder.newBuilder();
+        builder.where().project(project.getId()).and().issueType(issueType.getId()).and().fixVersion(version.getId());
+        builder.where().and().resolution(isReleased ? DONE : UNRESOLVED);
+        return builder.orderBy().issueKey(SortOrder.ASC).endOrderBy().buildQuery();
+    }
+
+    /**
+     * K-way merge of results ordered by issue key, issues found by several shards are kept once.
+     */
+    static List<Issue> mergeByIssueKey(List<List<Issue>> sortedResults) {
+        PriorityQueue<ShardCursor> cursors = new PriorityQueue<>(Math.max(1, sortedResults.size()),
+                (left, right) -> IssueKeyComparator.INSTANCE.compare(left.current.getKey(), right.current.getKey()));
+        int total = 0;
+        for (List<Issue> result : sortedResults) {
+            total += result.size();
+            ShardCursor cursor = new ShardCursor(result.iterator());
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+        }
+        List<Issue> merged = new ArrayList<>(total);
+        String lastKey = null;
+        while (!cursors.isEmpty()) {
+            ShardCursor cursor = cursors.poll();
+            String key = cursor.current.getKey();
+            if (!key.equals(lastKey)) {
+                merged.add(cursor.current);
+                lastKey = key;
+            }
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    private List<Issue> searchShard(ApplicationUser user, Query query, AtomicBoolean failed) {
+        List<Issue> issues = new ArrayList<>();
+        Iterator<Issue> iterator = streamIssuesFromQuery(user, query).iterator();
+        while (!failed.get() && iterator.hasNext()) {
+            issues.add(iterator.next());
+        }
+        if (failed.get()) {
+            throw new CancellationException("Another shard search failed");
         }
-        return issues.stream().filter(issue -> issue.getCustomFieldValue(cf).equals(searchFieldValue)).collect(Collectors.toList());
+        return issues;
     }
 
-    private JqlClauseBuilder addVersionResolvedCondition(JqlClauseBuilder builder) {
+    /**
+     * Runs a shard search on an executor thread: Jira thread locals (request cache, database connection, ...) are
+     * initialised for the task and cleaned afterwards, the logged in user is the given one during the task.
+     */
+    private <T> T runAs(ApplicationUser user, Supplier<T> action) {
+        JiraThreadLocalUtil threadLocalUtil = getJiraThreadLocalUtil();
+        threadLocalUtil.preCall();
+        try {
+            ApplicationUser previousUser = jiraAuthenticationContext.getLoggedInUser();
+            jiraAuthenticationContext.setLoggedInUser(user);
+            try {
+                return action.get();
+            } finally {
+                jiraAuthenticationContext.setLoggedInUser(previousUser);
+            }
+        } finally {
+            threadLocalUtil.postCall(THREAD_LOCAL_LOG);
+        }
+    }
+
+    private static JqlClauseBuilder addVersionResolvedCondition(JqlClauseBuilder builder) {
         return builder.and().resolution(DONE);
     }
 
     @Override
     public List<Issue> getIssuesFromQuery(ApplicationUser user, Query query) {
+        return streamIssuesFromQuery(user, query).collect(Collectors.toList());
+    }
+
+    @Override
+    public Stream<Issue> streamIssuesFromQuery(ApplicationUser user, Query query) {
+        return streamValidatedQuery(user, query, searchService.validateQuery(user, query));
+    }
+
+    private Stream<Issue> streamValidatedQuery(ApplicationUser user, Query query, MessageSet messageSet) {
+        checkMessageSet(messageSet, query, user);
+        return PagedIssueIterator.stream(searchService, user, query, pageSize, "Jira Search Service Failed");
+    }
+
+    @Override
+    public long[] getIssueIdsFromQuery(ApplicationUser user, Query query) {
+        IssueIdCollector collector = new IssueIdCollector();
+        searchIndex(user, query, collector);
+        return collector.getSortedIds();
+    }
+
+    @Override
+    public List<String> getIssueKeysFromQuery(ApplicationUser user, Query query) {
+        IssueKeyCollector collector = new IssueKeyCollector();
+        searchIndex(user, query, collector);
+        return collector.getSortedKeys();
+    }
+
+    private void searchIndex(ApplicationUser user, Query query, FieldDocumentHitCollector collector) {
         MessageSet messageSet = searchService.validateQuery(user, query);
         checkMessageSet(messageSet, query, user);
         try {
-            SearchResults<Issue> searchResults = searchService.search(user, query, PagerFilter.getUnlimitedFilter());
-            return searchResults.getResults();
+            getSearchProvider().search(SearchQuery.create(query, user), collector);
         } catch (SearchException e) {
             throw new JiraSearchEngineException("Jira Search Service Failed", e);
         }
     }
 
+    private SearchProvider getSearchProvider() {
+        SearchProvider provider = searchProvider;
+        if (provider == null) {
+            provider = ComponentAccessor.getComponent(SearchProvider.class);
+            searchProvider = provider;
+        }
+        return provider;
+    }
+
+    private JiraThreadLocalUtil getJiraThreadLocalUtil() {
+        JiraThreadLocalUtil util = jiraThreadLocalUtil;
+        if (util == null) {
+            util = ComponentAccessor.getComponent(JiraThreadLocalUtil.class);
+            jiraThreadLocalUtil = util;
+        }
+        return util;
+    }
+
     private void checkMessageSet(MessageSet messageSet, Query query, ApplicationUser user) {
 
         if (messageSet.hasAnyWarnings()) {
@@ -141,4 +416,18 @@ public class JiraSearchServiceImpl implements JiraSearchService {
             LOG.error("Query " + query.toString() + " by " + user.getName());
         }
     }
+
+    private static final class ShardCursor {
+        private final Iterator<Issue> iterator;
+        private Issue current;
+
+        private ShardCursor(Iterator<Issue> iterator) {
+            this.iterator = iterator;
+        }
+
+        private boolean advance() {
+            current = iterator.hasNext() ? iterator.next() : null;
+            return current != null;
+        }
+    }
 }
@@ -0,0 +1,112 @@
+package org.octopusden.octopus.jira.utils.impl;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Case-insensitive name to object index over a Jira configuration collection (issue types, link types, ...).
+ * <p>
+ * The index is built on first lookup and kept until {@link #invalidate()}. Lookups by the exact name are a single
+ * hash map read returning a prebuilt {@link Optional}, other spellings take one lower-casing.
+ * When several objects share a name ignoring case the last one of the source collection wins.
+ * <p>
+ * Every hit is checked against the current object of the manager by id, so a deleted or renamed object is never
+ * served: the index is rebuilt instead. A name that is not found rebuilds the index too, so a newly created object
+ * is found at once.
+ */
+class NamedObjectIndex<T> {
+
+    private final Supplier<? extends Collection<T>> source;
+    private final Function<T, String> nameFunction;
+    private final Function<T, T> currentFunction;
+
+    private volatile Snapshot<T> snapshot;
+
+    /**
+     * @param currentFunction returns the current state of an indexed object as held by the manager (looked up by its
+     *                        id), null if it does not exist anymore
+     */
+    NamedObjectIndex(Supplier<? extends Collection<T>> source, Function<T, String> nameFunction, Function<T, T> currentFunction) {
+        this.source = source;
+        this.nameFunction = nameFunction;
+        this.currentFunction = currentFunction;
+    }
+
+    Optional<T> find(String name) {
+        if (name == null) {
+            return Optional.empty();
+        }
+        Snapshot<T> current = snapshot;
+        boolean rebuilt = current == null;
+        if (rebuilt) {
+            current = rebuild();
+        }
+        Optional<T> result = current.find(name);
+        if (result != null) {
+            if (isCurrent(result.get(), name)) {
+                return result;
+            }
+            // Deleted or renamed since the index was built
+            result = rebuild().find(name);
+            return result != null && isCurrent(result.get(), name) ? result : Optional.empty();
+        }
+        if (rebuilt) {
+            return Optional.empty();
+        }
+        // Created since the index was built
+        result = rebuild().find(name);
+        return result != null ? result : Optional.empty();
+    }
+
+    void invalidate() {
+        snapshot = null;
+    }
+
+    private boolean isCurrent(T object, String name) {
+        T current = currentFunction.apply(object);
+        return current != null && name.equalsIgnoreCase(nameFunction.apply(current));
+    }
+
+    private Snapshot<T> rebuild() {
+        Collection<T> objects = source.get();
+        Map<String, Optional<T>> byLowerCaseName = new HashMap<>();
+        for (T object : objects) {
+            byLowerCaseName.put(toLowerCase(nameFunction.apply(object)), Optional.of(object));
+        }
+        Map<String, Optional<T>> byName = new HashMap<>();
+        for (T object : objects) {
+            String name = nameFunction.apply(object);
+            byName.put(name, byLowerCaseName.get(toLowerCase(name)));
+        }
+        Snapshot<T> rebuilt = new Snapshot<>(byName, byLowerCaseName);
+        snapshot = rebuilt;
+        return rebuilt;
+    }
+
+    private static String toLowerCase(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Snapshot<T> {
+        private final Map<String, Optional<T>> byName;
+        private final Map<String, Optional<T>> byLowerCaseName;
+
+        private Snapshot(Map<String, Optional<T>> byName, Map<String, Optional<T>> byLowerCaseName) {
+            this.byName = byName;
+            this.byLowerCaseName = byLowerCaseName;
+        }
+
+        /**
+         * @return indexed object or null
+         */
+        private Optional<T> find(String name) {
+            Optional<T> result = byName.get(name);
+            return result != null ? result : byLowerCaseName.get(toLowerCase(name));
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.octopusden.octopus.jira.utils.impl;
+
+import com.atlassian.jira.bc.issue.search.SearchService;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.issue.search.SearchException;
+import com.atlassian.jira.issue.search.SearchResults;
+import com.atlassian.jira.issue.search.constants.SystemSearchConstants;
+import com.atlassian.jira.jql.builder.JqlQueryBuilder;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.jira.web.bean.PagerFilter;
+import com.atlassian.query.Query;
+import com.atlassian.query.order.OrderBy;
+import com.atlassian.query.order.SearchSort;
+import com.atlassian.query.order.SortOrder;
+import org.octopusden.octopus.jira.exception.JiraSearchEngineException;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates over search results fetching fixed-size pages on demand.
+ * Only the current page is referenced, the next one is requested when the current one is exhausted.
+ * <p>
+ * Pages are requested by offset, so the query is sorted by issue key last: without a total order the index may
+ * return issues in another order for the next page and an issue would be skipped or returned twice.
+ */
+class PagedIssueIterator implements Iterator<Issue> {
+
+    private final SearchService searchService;
+    private final ApplicationUser user;
+    private final Query query;
+    private final int pageSize;
+    private final String errorMessage;
+
+    private List<Issue> page = Collections.emptyList();
+    private int pageIndex;
+    private int nextStart;
+    private boolean lastPage;
+
+    PagedIssueIterator(SearchService searchService, ApplicationUser user, Query query, int pageSize, String errorMessage) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("page size must be positive: " + pageSize);
+        }
+        this.searchService = searchService;
+        this.user = user;
+        this.query = withStableOrder(query);
+        this.pageSize = pageSize;
+        this.errorMessage = errorMessage;
+    }
+
+    static Stream<Issue> stream(SearchService searchService, ApplicationUser user, Query query, int pageSize, String errorMessage) {
+        PagedIssueIterator iterator = new PagedIssueIterator(searchService, user, query, pageSize, errorMessage);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (pageIndex >= page.size()) {
+            if (lastPage) {
+                return false;
+            }
+            fetchNextPage();
+        }
+        return true;
+    }
+
+    @Override
+    public Issue next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.get(pageIndex++);
+    }
+
+    /**
+     * @return the query sorted by issue key after its own sorts, the query itself if it already sorts by key
+     */
+    static Query withStableOrder(Query query) {
+        OrderBy orderBy = query.getOrderByClause();
+        if (orderBy != null) {
+            Set<String> keyFieldNames = SystemSearchConstants.forIssueKey().getJqlClauseNames().getJqlFieldNames();
+            for (SearchSort sort : orderBy.getSearchSorts()) {
+                if (keyFieldNames.contains(sort.getField().toLowerCase(Locale.ROOT))) {
+                    return query;
+                }
+            }
+        }
+        return JqlQueryBuilder.newBuilder(query).orderBy().issueKey(SortOrder.ASC).endOrderBy().buildQuery();
+    }
+
+    private void fetchNextPage() {
+        try {
+            SearchResults<Issue> searchResults = searchService.search(user, query, new PagerFilter(nextStart, pageSize));
+            page = searchResults.getResults();
+            pageIndex = 0;
+            nextStart += page.size();
+            lastPage = page.size() < pageSize || nextStart >= searchResults.getTotal();
+        } catch (SearchException e) {
+            throw new JiraSearchEngineException(errorMessage, e);
+        }
+    }
+}
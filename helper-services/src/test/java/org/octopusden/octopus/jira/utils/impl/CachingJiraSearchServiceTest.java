@@ -0,0 +1,164 @@
+package org.octopusden.octopus.jira.utils.impl;
+
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.jira.bc.issue.search.SearchService;
+import com.atlassian.jira.event.issue.IssueEvent;
+import com.atlassian.jira.event.project.AbstractVersionEvent;
+import com.atlassian.jira.event.type.EventType;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.project.version.Version;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.query.Query;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.octopusden.octopus.jira.utils.JiraSearchService;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CachingJiraSearchServiceTest {
+
+    private static final long PROJECT_ID = 1L;
+    private static final long VERSION_ID = 10L;
+
+    private final JiraSearchService delegate = mock(JiraSearchService.class);
+    private final Query query = mock(Query.class);
+    private final Project project = mock(Project.class);
+    private final Version version = mock(Version.class);
+    private final AtomicInteger searches = new AtomicInteger();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private CachingJiraSearchService service;
+
+    @Before
+    public void setUp() {
+        SearchService searchService = mock(SearchService.class);
+        when(searchService.getJqlString(query)).thenReturn("project = 1  AND fixVersion = 10");
+        when(project.getId()).thenReturn(PROJECT_ID);
+        when(version.getId()).thenReturn(VERSION_ID);
+        service = new CachingJiraSearchService(delegate, searchService, mock(EventPublisher.class), 100, 1, TimeUnit.HOURS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void repeatedSearchIsServedFromCache() {
+        answerWith(issue(100L));
+
+        Assert.assertEquals(1, search().size());
+        Assert.assertEquals(1, search().size());
+
+        Assert.assertEquals(1, searches.get());
+        Assert.assertEquals(1, service.getHitCount());
+        Assert.assertEquals(1, service.getMissCount());
+    }
+
+    @Test
+    public void versionChangeEvictsResult() {
+        answerWith(issue(100L));
+        search();
+
+        service.onVersionEvent(versionEvent(VERSION_ID));
+        search();
+
+        Assert.assertEquals(2, searches.get());
+    }
+
+    @Test
+    public void changeOfOtherProjectKeepsResult() {
+        answerWith(issue(100L));
+        search();
+
+        service.onIssueEvent(issueEvent(issue(200L), 2L, EventType.ISSUE_UPDATED_ID));
+        search();
+
+        Assert.assertEquals(1, searches.get());
+    }
+
+    @Test
+    public void oversizedResultsAreNotKept() {
+        Issue[] issues = new Issue[150];
+        for (int i = 0; i < issues.length; i++) {
+            issues[i] = issue((long) i);
+        }
+        answerWith(issues);
+
+        search();
+        search();
+
+        Assert.assertEquals(2, searches.get());
+    }
+
+    @Test
+    public void resultOfSearchRunningDuringChangeIsNotKept() throws Exception {
+        CountDownLatch searchStarted = new CountDownLatch(1);
+        CountDownLatch changed = new CountDownLatch(1);
+        Issue stale = issue(100L);
+        Issue fresh = issue(101L);
+        when(delegate.getIssuesFromQuery(any(ApplicationUser.class), any(Query.class))).thenAnswer(invocation -> {
+            if (searches.incrementAndGet() == 1) {
+                searchStarted.countDown();
+                Assert.assertTrue(changed.await(5, TimeUnit.SECONDS));
+                return Collections.singletonList(stale);
+            }
+            return Collections.singletonList(fresh);
+        });
+
+        Future<List<Issue>> running = executor.submit(this::search);
+        Assert.assertTrue(searchStarted.await(5, TimeUnit.SECONDS));
+        service.onVersionEvent(versionEvent(VERSION_ID));
+        changed.countDown();
+
+        Assert.assertEquals(Collections.singletonList(stale), running.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(Collections.singletonList(fresh), search());
+        Assert.assertEquals(2, searches.get());
+    }
+
+    private List<Issue> search() {
+        return service.getCached(null, query, project, Collections.singletonList(version));
+    }
+
+    private void answerWith(Issue... issues) {
+        when(delegate.getIssuesFromQuery(any(ApplicationUser.class), any(Query.class))).thenAnswer(invocation -> {
+            searches.incrementAndGet();
+            return Arrays.asList(issues);
+        });
+    }
+
+    private static Issue issue(Long id) {
+        Issue issue = mock(Issue.class);
+        when(issue.getId()).thenReturn(id);
+        when(issue.getProjectId()).thenReturn(PROJECT_ID);
+        return issue;
+    }
+
+    private static IssueEvent issueEvent(Issue issue, Long projectId, Long eventTypeId) {
+        when(issue.getProjectId()).thenReturn(projectId);
+        IssueEvent event = mock(IssueEvent.class);
+        when(event.getIssue()).thenReturn(issue);
+        when(event.getEventTypeId()).thenReturn(eventTypeId);
+        return event;
+    }
+
+    private static AbstractVersionEvent versionEvent(long versionId) {
+        AbstractVersionEvent event = mock(AbstractVersionEvent.class);
+        when(event.getVersionId()).thenReturn(versionId);
+        return event;
+    }
+}
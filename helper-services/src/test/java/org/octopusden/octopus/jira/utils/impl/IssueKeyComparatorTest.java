@@ -0,0 +1,32 @@
+package org.octopusden.octopus.jira.utils.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class IssueKeyComparatorTest {
+
+    @Test
+    public void ordersIssueNumbersNumerically() {
+        Assert.assertTrue(IssueKeyComparator.INSTANCE.compare("ABC-9", "ABC-10") < 0);
+        Assert.assertTrue(IssueKeyComparator.INSTANCE.compare("ABC-100", "ABC-99") > 0);
+        Assert.assertEquals(0, IssueKeyComparator.INSTANCE.compare("ABC-10", "ABC-10"));
+    }
+
+    @Test
+    public void ordersByProjectKeyFirst() {
+        List<String> keys = Arrays.asList("ABD-1", "ABC-10", "AB-300", "ABC-9");
+
+        keys.sort(IssueKeyComparator.INSTANCE);
+
+        Assert.assertEquals(Arrays.asList("AB-300", "ABC-9", "ABC-10", "ABD-1"), keys);
+    }
+
+    @Test
+    public void comparesKeysWithoutNumberAsStrings() {
+        Assert.assertTrue(IssueKeyComparator.INSTANCE.compare("ABC", "ABC-1") < 0);
+        Assert.assertTrue(IssueKeyComparator.INSTANCE.compare("XYZ", "ABC-1") > 0);
+    }
+}
@@ -0,0 +1,185 @@
+package org.octopusden.octopus.jira.utils.impl;
+
+import com.atlassian.jira.bc.issue.search.SearchService;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.issue.index.DocumentConstants;
+import com.atlassian.jira.issue.search.SearchException;
+import com.atlassian.jira.issue.search.SearchProvider;
+import com.atlassian.jira.issue.search.SearchQuery;
+import com.atlassian.jira.issue.search.SearchResults;
+import com.atlassian.jira.issue.statistics.util.FieldDocumentHitCollector;
+import com.atlassian.jira.security.JiraAuthenticationContext;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.jira.util.MessageSet;
+import com.atlassian.jira.util.thread.JiraThreadLocalUtil;
+import com.atlassian.jira.web.bean.PagerFilter;
+import com.atlassian.query.Query;
+import com.atlassian.query.order.OrderByImpl;
+import com.atlassian.query.order.SearchSort;
+import com.atlassian.query.order.SortOrder;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.search.Collector;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.octopusden.octopus.jira.exception.JiraSearchEngineException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class JiraSearchServiceImplTest {
+
+    private final ApplicationUser user = mock(ApplicationUser.class);
+    private final Query query = mock(Query.class);
+    private final SearchService searchService = mock(SearchService.class);
+    private final SearchProvider searchProvider = mock(SearchProvider.class);
+    private JiraSearchServiceImpl service;
+
+    @Before
+    public void setUp() {
+        when(searchService.validateQuery(user, query)).thenReturn(mock(MessageSet.class));
+        service = new JiraSearchServiceImpl(mock(JiraAuthenticationContext.class), searchService, searchProvider, 100);
+    }
+
+    @Test
+    public void issueKeysAreReturnedInIssueKeyOrder() throws SearchException {
+        indexed(document(DocumentConstants.ISSUE_KEY, "ABC-10"),
+                document(DocumentConstants.ISSUE_KEY, "ABC-9"),
+                document(DocumentConstants.ISSUE_ID, "1"),
+                document(DocumentConstants.ISSUE_KEY, "AB-11"));
+
+        Assert.assertEquals(Arrays.asList("AB-11", "ABC-9", "ABC-10"), service.getIssueKeysFromQuery(user, query));
+    }
+
+    @Test
+    public void issueIdsAreReturnedInAscendingOrder() throws SearchException {
+        List<Document> documents = new ArrayList<>();
+        for (int id = 200; id > 0; id--) {
+            documents.add(document(DocumentConstants.ISSUE_ID, String.valueOf(id)));
+        }
+        documents.add(document(DocumentConstants.ISSUE_KEY, "ABC-1"));
+        indexed(documents.toArray(new Document[0]));
+
+        long[] ids = service.getIssueIdsFromQuery(user, query);
+
+        Assert.assertEquals(200, ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            Assert.assertEquals(i + 1, ids[i]);
+        }
+    }
+
+    @Test
+    public void exactCustomFieldMatchUsesEquals() {
+        Object option = new Object() {
+            @Override
+            public String toString() {
+                return "CLIENT-1";
+            }
+        };
+
+        Assert.assertTrue(JiraSearchServiceImpl.customFieldValueEquals("CLIENT-1", "CLIENT-1"));
+        Assert.assertFalse(JiraSearchServiceImpl.customFieldValueEquals(option, "CLIENT-1"));
+        Assert.assertFalse(JiraSearchServiceImpl.customFieldValueEquals(null, "CLIENT-1"));
+    }
+
+    @Test
+    public void mergeKeepsIssueKeyOrderAndDropsIssuesFoundBySeveralShards() {
+        List<Issue> merged = JiraSearchServiceImpl.mergeByIssueKey(Arrays.asList(
+                issues("ABC-1", "ABC-9", "ABC-10"),
+                issues("ABC-2", "ABC-10", "ABC-11"),
+                Collections.emptyList(),
+                issues("AB-5", "ABC-9")));
+
+        Assert.assertEquals(Arrays.asList("AB-5", "ABC-1", "ABC-2", "ABC-9", "ABC-10", "ABC-11"),
+                merged.stream().map(Issue::getKey).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void failedShardFailsSearchWithoutWaitingForRunningShards() throws Exception {
+        Query slowQuery = keyOrderedQuery();
+        Query failingQuery = keyOrderedQuery();
+        CountDownLatch slowSearchStarted = new CountDownLatch(1);
+        CountDownLatch slowSearchReleased = new CountDownLatch(1);
+        AtomicInteger slowSearches = new AtomicInteger();
+        when(searchService.validateQuery(any(ApplicationUser.class), any(Query.class))).thenReturn(mock(MessageSet.class));
+        when(searchService.search(eq(user), eq(slowQuery), any(PagerFilter.class))).thenAnswer(invocation -> {
+            slowSearches.incrementAndGet();
+            slowSearchStarted.countDown();
+            Assert.assertTrue(slowSearchReleased.await(10, TimeUnit.SECONDS));
+            return new SearchResults<>(issues("ABC-1"), 10, 1, 0);
+        });
+        when(searchService.search(eq(user), eq(failingQuery), any(PagerFilter.class))).thenAnswer(invocation -> {
+            Assert.assertTrue(slowSearchStarted.await(5, TimeUnit.SECONDS));
+            throw new SearchException("Index unavailable");
+        });
+        JiraSearchServiceImpl pagedService = new JiraSearchServiceImpl(mock(JiraAuthenticationContext.class), searchService,
+                searchProvider, mock(JiraThreadLocalUtil.class), 1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CompletableFuture<List<Issue>> search = CompletableFuture.supplyAsync(
+                    () -> pagedService.searchShards(user, Arrays.asList(slowQuery, failingQuery), executor));
+            try {
+                search.get(5, TimeUnit.SECONDS);
+                Assert.fail("Search should fail");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof JiraSearchEngineException);
+            }
+        } finally {
+            slowSearchReleased.countDown();
+            executor.shutdown();
+        }
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        // The running shard stops before requesting its next page
+        Assert.assertEquals(1, slowSearches.get());
+    }
+
+    private static Query keyOrderedQuery() {
+        Query query = mock(Query.class);
+        when(query.getOrderByClause()).thenReturn(new OrderByImpl(new SearchSort("key", SortOrder.ASC)));
+        return query;
+    }
+
+    private static List<Issue> issues(String... keys) {
+        List<Issue> issues = new ArrayList<>(keys.length);
+        for (String key : keys) {
+            Issue issue = mock(Issue.class);
+            when(issue.getKey()).thenReturn(key);
+            issues.add(issue);
+        }
+        return issues;
+    }
+
+    private void indexed(Document... documents) throws SearchException {
+        doAnswer(invocation -> {
+            FieldDocumentHitCollector collector = (FieldDocumentHitCollector) invocation.getArguments()[1];
+            for (Document document : documents) {
+                collector.collect(document);
+            }
+            return null;
+        }).when(searchProvider).search(any(SearchQuery.class), any(Collector.class));
+    }
+
+    private static Document document(String field, String value) {
+        Document document = new Document();
+        document.add(new StringField(field, value, Field.Store.YES));
+        return document;
+    }
+}
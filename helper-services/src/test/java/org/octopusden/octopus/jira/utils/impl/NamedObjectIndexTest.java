@@ -0,0 +1,83 @@
+package org.octopusden.octopus.jira.utils.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class NamedObjectIndexTest {
+
+    private final Map<Long, Named> objects = new LinkedHashMap<>();
+    private final AtomicInteger scans = new AtomicInteger();
+
+    @Test
+    public void findsByNameIgnoringCase() {
+        put(1L, "Bug");
+        NamedObjectIndex<Named> index = index();
+
+        Assert.assertEquals(Optional.of(objects.get(1L)), index.find("Bug"));
+        Assert.assertEquals(Optional.of(objects.get(1L)), index.find("BUG"));
+        Assert.assertEquals(1, scans.get());
+    }
+
+    @Test
+    public void renamedObjectIsNotServedByOldName() {
+        put(1L, "Bug");
+        NamedObjectIndex<Named> index = index();
+        index.find("Bug");
+
+        put(1L, "Defect");
+
+        Assert.assertEquals(Optional.empty(), index.find("Bug"));
+        Assert.assertEquals("Defect", index.find("defect").get().name);
+    }
+
+    @Test
+    public void deletedObjectIsNotServed() {
+        put(1L, "Bug");
+        NamedObjectIndex<Named> index = index();
+        index.find("Bug");
+
+        objects.remove(1L);
+
+        Assert.assertEquals(Optional.empty(), index.find("Bug"));
+    }
+
+    @Test
+    public void createdObjectIsFoundAtOnce() {
+        put(1L, "Bug");
+        NamedObjectIndex<Named> index = index();
+        Assert.assertEquals(Optional.empty(), index.find("Task"));
+
+        put(2L, "Task");
+
+        Assert.assertEquals("Task", index.find("Task").get().name);
+    }
+
+    private NamedObjectIndex<Named> index() {
+        return new NamedObjectIndex<>(this::scan, named -> named.name, named -> objects.get(named.id));
+    }
+
+    private Collection<Named> scan() {
+        scans.incrementAndGet();
+        return objects.values();
+    }
+
+    private void put(Long id, String name) {
+        objects.put(id, new Named(id, name));
+    }
+
+    private static final class Named {
+        private final Long id;
+        private final String name;
+
+        private Named(Long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+}